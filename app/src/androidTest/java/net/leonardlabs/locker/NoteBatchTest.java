@@ -0,0 +1,128 @@
+package net.leonardlabs.locker;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Selection action test, which will execute on an Android device.
+ *
+ * Saves three unencrypted notes & one encrypted note in a test database, then locks or exports a
+ * selection of them (with a Row Id that doesn't exist) and checks which notes are counted. A second
+ * connection adds a failing trigger, to check that a lock is written in one transaction.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteBatchTest {
+
+    private static final String TEST_DATABASE = "NoteBatchTestDb";
+    private static final char[] PASSCODE = "batch passcode".toCharArray();
+
+    // Notes 1 to 3 are unencrypted, note 4 is encrypted & note 5 doesn't exist
+    private static final long[] SELECTION = {1, 2, 3, 4, 5};
+
+    private Context context;
+    private NoteDBAdapter noteDb;
+    private SQLiteDatabase otherDb;
+
+    @Before
+    public void createNotes() {
+
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DATABASE);
+
+        noteDb = new NoteDBAdapter(context, TEST_DATABASE).open();
+
+        assertTrue(noteDb.insertIfNameFree("c note", body(1), null));
+        assertTrue(noteDb.insertIfNameFree("a note", body(2), null));
+        assertTrue(noteDb.insertIfNameFree("b note", body(3), null));
+        assertTrue(noteDb.insertIfNameFree("locked note", body(4), PASSCODE));
+
+        otherDb = SQLiteDatabase.openDatabase(context.getDatabasePath(TEST_DATABASE).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+    }
+
+    @After
+    public void deleteNotes() {
+
+        otherDb.close();
+        noteDb.close();
+        context.deleteDatabase(TEST_DATABASE);
+
+        // Row Ids are reused by the next test's database
+        NoteDBAdapter.clearKeyCache();
+    }
+
+    @Test
+    public void lockNotes_locksUnencryptedNotesOnly() {
+
+        assertEquals(3, noteDb.lockNotes(SELECTION, PASSCODE));
+
+        for (long rowId = 1; rowId <= 4; rowId++) {
+
+            assertTrue(noteDb.isEncrypted(rowId));
+            assertArrayEquals(body(rowId), noteDb.decryptNote(rowId, PASSCODE));
+        }
+    }
+
+    @Test
+    public void lockNotes_writesNothingIfOneNoteFails() {
+
+        // Notes 1 & 2 are written before note 3 fails, & are rolled back with it
+        otherDb.execSQL("create trigger failLock before update on noteTable when new._id = 3 begin select raise(abort, 'Lock failed'); end");
+
+        try {
+
+            noteDb.lockNotes(SELECTION, PASSCODE);
+            fail("Lock of note 3 should have failed");
+        }
+        catch (SQLiteException expected) {
+
+            // Thrown out of the transaction, which is then rolled back
+        }
+
+        for (long rowId = 1; rowId <= 3; rowId++) {
+
+            assertFalse(noteDb.isEncrypted(rowId));
+        }
+    }
+
+    @Test
+    public void exportNotes_returnsUnencryptedNotesByName() {
+
+        Map<String, byte[]> notes = noteDb.exportNotes(SELECTION);
+
+        assertEquals(3, notes.size());
+        assertEquals("[a note, b note, c note]", new ArrayList<>(notes.keySet()).toString());
+        assertArrayEquals(body(2), notes.get("a note"));
+        assertArrayEquals(body(3), notes.get("b note"));
+        assertArrayEquals(body(1), notes.get("c note"));
+    }
+
+    @Test
+    public void exportNotes_endsItsTransaction() {
+
+        noteDb.exportNotes(SELECTION);
+
+        // Export's transaction holds the write lock, so another connection can only write once it has ended
+        otherDb.execSQL("update noteTable set name = 'd note' where _id = 1");
+
+        assertEquals("d note", noteDb.getName(1));
+    }
+
+    private static byte[] body(long rowId) {
+
+        return ("body of note " + rowId).getBytes();
+    }
+}
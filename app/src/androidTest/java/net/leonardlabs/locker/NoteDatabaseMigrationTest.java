@@ -0,0 +1,373 @@
+package net.leonardlabs.locker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Base64;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Schema migration test, which will execute on an Android device.
+ *
+ * Generates a version 1 database of 10k notes (a third encrypted, with Base-64 text columns as
+ * version 1 saved them), upgrades it to the version before each step, then runs the step and
+ * checks that every note survives it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteDatabaseMigrationTest {
+
+    private static final int NOTE_COUNT = 10000;
+    private static final int DELETED_NOTES = 2;                             // Newest notes are deleted, so Row Id Sequence is ahead of largest Row Id
+
+    private static final String V1_NOTE_TABLE_SQL =
+            "create table noteTable (_id integer primary key autoincrement, name string not null, date integer not null, "
+                    + "body string not null, scheme integer not null, salt string not null, iv string not null, "
+                    + "passcodehash string not null, passcodesalt string not null, badpasscode integer not null);";
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void createVersion1Database() {
+
+        db = SQLiteDatabase.create(null);
+        db.execSQL(V1_NOTE_TABLE_SQL);
+
+        Random random = new Random(1);
+        SQLiteStatement insert = db.compileStatement("insert into noteTable (name, date, body, scheme, salt, iv, passcodehash, passcodesalt, badpasscode)"
+                + " values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        db.beginTransaction();
+
+        try {
+
+            for (int i = 0; i < NOTE_COUNT; i++) {
+
+                boolean encrypted = (i % 3 == 0);
+
+                insert.bindString(1, "note " + i);
+                insert.bindLong(2, 1500000000000L + i * 1000L);
+                insert.bindString(3, encrypted ? randomBase64(random, 200) : "plain body " + i);
+                insert.bindLong(4, i % 3);
+                insert.bindString(5, encrypted ? randomBase64(random, 16) : "");
+                insert.bindString(6, encrypted ? randomBase64(random, 16) : "");
+                insert.bindString(7, encrypted ? randomBase64(random, 32) : "");
+                insert.bindString(8, encrypted ? randomBase64(random, 16) : "");
+                insert.bindLong(9, encrypted ? i % 7 : 0);
+                insert.executeInsert();
+            }
+
+            db.execSQL("delete from noteTable where _id > " + (NOTE_COUNT - DELETED_NOTES));
+
+            db.setTransactionSuccessful();
+        }
+        finally {
+
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void closeDatabase() {
+
+        db.close();
+    }
+
+    @Test
+    public void migrations_areInVersionOrderUpToDatabaseVersion() {
+
+        DatabaseMigration.checkOrder(NoteDBAdapter.MIGRATIONS);
+
+        assertEquals(NoteDBAdapter.DATABASE_VERSION, NoteDBAdapter.MIGRATIONS[NoteDBAdapter.MIGRATIONS.length - 1].version);
+    }
+
+    @Test
+    public void version2_addsDateIndex() {
+
+        runStep(2);
+
+        assertTrue(indexExists("noteTableDateIndex"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void version3_copiesBadPasscodeCounts() {
+
+        upgradeTo(2);
+        long badPasscodeNotes = count("select count(*) from noteTable where badpasscode != 0");
+        long badPasscodeTotal = count("select sum(badpasscode) from noteTable");
+
+        runStep(3);
+
+        assertEquals(badPasscodeNotes, count("select count(*) from lockoutTable"));
+        assertEquals(badPasscodeTotal, count("select sum(badpasscode) from lockoutTable"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void version4_rebuildsWithBlobColumns() {
+
+        upgradeTo(3);
+        long bodyLength = count("select sum(length(body)) from noteTable");
+        String encryptedNote = firstEncryptedNote("body");
+
+        runStep(4);
+
+        List<String> columns = getColumns("noteTable");
+        assertTrue(columns.contains("format"));
+        assertFalse(columns.contains("badpasscode"));
+        assertEquals(0, count("select count(*) from noteTable where format != 0"));
+        assertEquals(bodyLength, count("select sum(length(body)) from noteTable"));
+        assertEquals(encryptedNote, firstEncryptedNote("body"));
+        assertTrue(indexExists("noteTableDateIndex"));
+        assertFalse(getTables().contains("noteTableV3"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void version5_movesBodiesToBodyTable() {
+
+        upgradeTo(4);
+        long bodyLength = count("select sum(length(body)) from noteTable");
+
+        runStep(5);
+
+        assertFalse(getColumns("noteTable").contains("body"));
+        assertEquals(NOTE_COUNT - DELETED_NOTES, count("select count(*) from noteTable join bodyTable using (_id)"));
+        assertEquals(bodyLength, count("select sum(length(body)) from bodyTable"));
+        assertTrue(indexExists("noteTableDateIndex"));
+        assertFalse(getTables().contains("noteTableV4"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void version6_addsEmptyWrappedKeys() {
+
+        runStep(6);
+
+        assertEquals(NOTE_COUNT - DELETED_NOTES, count("select count(*) from noteTable where length(wrappedkey) = 0"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void version7_addsDefaultIterationCounts() {
+
+        runStep(7);
+
+        assertEquals(NOTE_COUNT - DELETED_NOTES, count("select count(*) from noteTable where iterations = 0"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void version8_addsEmptyChunkTable() {
+
+        runStep(8);
+
+        assertTrue(getTables().contains("chunkTable"));
+        assertEquals(0, count("select count(*) from chunkTable"));
+        assertEquals(NOTE_COUNT - DELETED_NOTES, count("select count(*) from bodyTable"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void version9_renamesDuplicatesAndAddsUniqueNameIndex() {
+
+        // Names were only unique by the app's scan before version 9
+        upgradeTo(8);
+        db.execSQL("update noteTable set name = 'note 3' where _id in (6, 7)");
+
+        // Name row 6 would be given is already taken
+        db.execSQL("update noteTable set name = 'note 3 (6)' where _id = 2");
+
+        migrate(8, 9);
+
+        assertTrue(indexExists("noteTableNameIndex"));
+        assertEquals(NOTE_COUNT - DELETED_NOTES, count("select count(distinct name) from noteTable"));
+        assertEquals("note 3", getString("select name from noteTable where _id = 4"));
+        assertEquals("note 3 (7)", getString("select name from noteTable where _id = 7"));
+        assertEquals("note 3 (6)", getString("select name from noteTable where _id = 2"));
+        assertEquals("note 3 (6) (6)", getString("select name from noteTable where _id = 6"));
+        assertNotesKept();
+    }
+
+    @Test
+    public void upgradeFromVersion1_matchesNewDatabase() {
+
+        upgradeTo(NoteDBAdapter.DATABASE_VERSION);
+
+        SQLiteDatabase newDb = SQLiteDatabase.create(null);
+        NoteDBAdapter.createTables(newDb);
+
+        List<String> tables = getTables(db);
+        assertEquals(getTables(newDb), tables);
+
+        for (String table : tables) {
+
+            assertEquals(getColumnDefinitions(newDb, table), getColumnDefinitions(db, table));
+        }
+
+        assertEquals(getIndexes(newDb), getIndexes(db));
+
+        newDb.close();
+    }
+
+    // Runs every step before version, then the step itself in its own transaction (as SQLiteOpenHelper runs upgrades)
+    private void runStep(int version) {
+
+        upgradeTo(version - 1);
+        migrate(version - 1, version);
+    }
+
+    private void upgradeTo(int version) {
+
+        migrate(1, version);
+    }
+
+    private void migrate(int oldVersion, int newVersion) {
+
+        db.beginTransaction();
+
+        try {
+
+            DatabaseMigration.migrate(db, NoteDBAdapter.MIGRATIONS, oldVersion, newVersion);
+            db.setTransactionSuccessful();
+        }
+        finally {
+
+            db.endTransaction();
+        }
+    }
+
+    // Every note is still there, & deleted Row Ids won't be reused
+    private void assertNotesKept() {
+
+        assertEquals(NOTE_COUNT - DELETED_NOTES, count("select count(*) from noteTable"));
+        assertEquals(NOTE_COUNT - DELETED_NOTES, count("select max(_id) from noteTable"));
+        assertEquals(NOTE_COUNT, count("select seq from sqlite_sequence where name = 'noteTable'"));
+        assertEquals("note 3", getString("select name from noteTable where _id = 4"));
+    }
+
+    private String firstEncryptedNote(String column) {
+
+        return getString("select " + column + " from noteTable where length(iv) > 0 order by _id limit 1");
+    }
+
+    private long count(String sql) {
+
+        Cursor cursor = db.rawQuery(sql, null);
+
+        try {
+
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+        finally {
+
+            cursor.close();
+        }
+    }
+
+    private String getString(String sql) {
+
+        Cursor cursor = db.rawQuery(sql, null);
+
+        try {
+
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+        finally {
+
+            cursor.close();
+        }
+    }
+
+    private boolean indexExists(String index) {
+
+        return count("select count(*) from sqlite_master where type = 'index' and name = '" + index + "'") == 1;
+    }
+
+    private List<String> getTables() {
+
+        return getTables(db);
+    }
+
+    private List<String> getColumns(String table) {
+
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("pragma table_info(" + table + ")", null);
+
+        while (cursor.moveToNext()) {
+
+            columns.add(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+        }
+
+        cursor.close();
+
+        return columns;
+    }
+
+    private static List<String> getTables(SQLiteDatabase database) {
+
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = database.rawQuery("select name from sqlite_master where type = 'table' and name != 'sqlite_sequence'"
+                + " and name != 'android_metadata' order by name", null);
+
+        while (cursor.moveToNext()) {
+
+            tables.add(cursor.getString(0));
+        }
+
+        cursor.close();
+
+        return tables;
+    }
+
+    // Name & Definition of each index created by the schema (not those SQLite creates for keys)
+    private static List<String> getIndexes(SQLiteDatabase database) {
+
+        List<String> indexes = new ArrayList<>();
+        Cursor cursor = database.rawQuery("select name, sql from sqlite_master where type = 'index' and sql is not null order by name", null);
+
+        while (cursor.moveToNext()) {
+
+            indexes.add(cursor.getString(0) + " " + cursor.getString(1));
+        }
+
+        cursor.close();
+
+        return indexes;
+    }
+
+    // Name, Type, Not Null, Default & Primary Key position of each column
+    private static List<String> getColumnDefinitions(SQLiteDatabase database, String table) {
+
+        List<String> definitions = new ArrayList<>();
+        Cursor cursor = database.rawQuery("pragma table_info(" + table + ")", null);
+
+        while (cursor.moveToNext()) {
+
+            definitions.add(cursor.getString(1) + " " + cursor.getString(2) + " " + cursor.getInt(3) + " " + cursor.getString(4) + " " + cursor.getInt(5));
+        }
+
+        cursor.close();
+
+        return definitions;
+    }
+
+    private static String randomBase64(Random random, int length) {
+
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+
+        return Base64.encodeToString(bytes, 0);
+    }
+}
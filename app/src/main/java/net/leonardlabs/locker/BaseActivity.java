@@ -31,9 +31,9 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
-import android.database.Cursor;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -51,6 +51,7 @@ import android.widget.EditText;
 import android.widget.Toast;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Random;
 
 public class BaseActivity extends AppCompatActivity {
@@ -69,9 +70,8 @@ public class BaseActivity extends AppCompatActivity {
     static final String permissibleCharactersString = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ123456789@#^&*_=";
 
     // Misc Application Parameters
-    static final int maxLines = 200;                // Maximum Note Size in Lines
+    static final int maxLines = 50000;              // Maximum Note Size in Lines (Bodies are saved in chunks, so size is limited by editing, not storage)
     static final int maxPasscodeSize = 32;          // Max Size of Passcode Character Array
-    static final int dbinUsePause = 50;
 
     // Dynamic Graphic Effect Parameters & Variables
     static int portraitMaxNoteSize = 0;
@@ -100,16 +100,27 @@ public class BaseActivity extends AppCompatActivity {
     static final int DECRYPTING = 12;
     static final int RENAME_PROMPT = 13;
     static final int CHANGE_PASSOCDE_PROMPT = 14;
+    static final int NOTES_MIGRATED = 15;
+    static final int PASSCODE_NOT_CHANGED = 16;
+    static final int NOTE_NOT_SAVED = 17;
 
     // Program Flow Booleans
     static boolean duringEncryptingGraphicalEffect = false;
     static boolean duringDecryptingGraphicalEffect = false;
     static boolean duringDecryption = false;
-    static boolean dbInUse = false;
 
     // Misc Global Variables
     static NoteDBAdapter myNoteDb;
     static Handler databaseUpdateHandler;
+
+    // Receives Note Change Events while Activity is in the foreground
+    private final NoteChangeBus.Listener noteChangeListener = new NoteChangeBus.Listener() {
+
+        public void onNotesChanged(Map<Long, Integer> changes) {
+
+            BaseActivity.this.onNotesChanged(changes);
+        }
+    };
     EncryptingGraphicEffectThread encryptingGraphicEffectThread;
     static final int NOTE_ACTIVITY_REQUEST = 0;
 
@@ -201,6 +212,7 @@ public class BaseActivity extends AppCompatActivity {
         super.onResume();
 
         registerDatabaseUpdateHandler();
+        NoteChangeBus.register(noteChangeListener);
     }
 
     // Setup Handler to Refresh Display & Perform Other Actions Related to Updating the Database
@@ -220,28 +232,24 @@ public class BaseActivity extends AppCompatActivity {
                     case NOTE_SAVED:
 
                         Toast.makeText(getApplicationContext(), "Saved.", Toast.LENGTH_SHORT).show();
-                        refreshDisplay();
 
                         break;
 
                     case NOTE_DELETED:
 
                         Toast.makeText(getApplicationContext(), "Note Deleted!", Toast.LENGTH_SHORT).show();
-                        refreshDisplay();
 
                         break;
 
                     case ALL_UNENCRYPTED_NOTES_DELETED:
 
-                        Toast.makeText(getApplicationContext(), "Unencrypted Notes Deleted!", Toast.LENGTH_SHORT).show();
-                        refreshDisplay();
+                        Toast.makeText(getApplicationContext(), message.arg1 + " Unencrypted Notes Deleted!", Toast.LENGTH_SHORT).show();
 
                         break;
 
                     case NAME_CHANGED:
 
                         Toast.makeText(getApplicationContext(), "Name Changed.", Toast.LENGTH_SHORT).show();
-                        refreshDisplay();
 
                         break;
 
@@ -259,7 +267,6 @@ public class BaseActivity extends AppCompatActivity {
                         updatePasscodeInUI(rowId, passcode);
 
                         Toast.makeText(getApplicationContext(), "Passphrase Added.", Toast.LENGTH_SHORT).show();
-                        refreshDisplay();
 
                         break;
 
@@ -286,6 +293,18 @@ public class BaseActivity extends AppCompatActivity {
 
                         break;
 
+                    case PASSCODE_NOT_CHANGED:
+
+                        Toast.makeText(getApplicationContext(), "Passphrase not changed!", Toast.LENGTH_SHORT).show();
+
+                        break;
+
+                    case NOTE_NOT_SAVED:
+
+                        Toast.makeText(getApplicationContext(), "Note not saved!", Toast.LENGTH_SHORT).show();
+
+                        break;
+
                     case INCORRECT_PASSCODE:
 
                         Toast.makeText(getApplicationContext(), "Incorrect Passphrase!", Toast.LENGTH_SHORT).show();
@@ -327,6 +346,12 @@ public class BaseActivity extends AppCompatActivity {
 
                         changePasscodePrompt(rowId, passcode);
 
+                        break;
+
+                    case NOTES_MIGRATED:
+
+                        Toast.makeText(getApplicationContext(), message.arg1 + " Notes Upgraded.", Toast.LENGTH_SHORT).show();
+
                         break;
                 }
             }
@@ -337,6 +362,20 @@ public class BaseActivity extends AppCompatActivity {
     protected void onPause() {
 
         super.onPause();
+
+        NoteChangeBus.unregister(noteChangeListener);
+
+        // Wipe passcode derived keys cached during session
+        NoteDBAdapter.clearKeyCache();
+    }
+
+    @Override
+    protected void onStop() {
+
+        super.onStop();
+
+        // Wipe passcode derived keys cached during session
+        NoteDBAdapter.clearKeyCache();
     }
 
     @Override
@@ -345,12 +384,12 @@ public class BaseActivity extends AppCompatActivity {
         super.onDestroy();
     }
 
-    // Open Database
+    // Open Database (Opened before any operation is queued, so reads on any thread & queued writes always find it open)
     void openNoteDB() {
 
         if (myNoteDb==null) {
 
-            myNoteDb = new NoteDBAdapter(this);
+            myNoteDb = new NoteDBAdapter(getApplicationContext());
             myNoteDb.open();
         }
     }
@@ -358,11 +397,17 @@ public class BaseActivity extends AppCompatActivity {
     // Close Database
     static void closeNoteDB() {
 
-        if (myNoteDb!=null) {
+        DatabaseExecutor.submit(new Runnable() {
 
-            myNoteDb.close();
-            myNoteDb = null;
-        }
+            public void run() {
+
+                if (myNoteDb!=null) {
+
+                    myNoteDb.close();
+                    myNoteDb = null;
+                }
+            }
+        });
     }
 
     // Child Method in Note View Activity is used to update the passcode after a change (for possible later note modification)
@@ -370,11 +415,16 @@ public class BaseActivity extends AppCompatActivity {
 
     }
 
-    // Child Methods are used by Database Update Handler to refresh displays
+    // Child Methods are used to refresh displays when resumed
     void refreshDisplay() {
 
     }
 
+    // Child Methods patch displays with notes changed in database (Note Row Id to NoteChangeBus Kind of Change)
+    void onNotesChanged(Map<Long, Integer> changes) {
+
+    }
+
     // Displays Rename Alert Dialog & launches new thread to change note name in database
     void renamePrompt(final long rowId) {
 
@@ -399,61 +449,17 @@ public class BaseActivity extends AppCompatActivity {
                                 InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
                                 imm.hideSoftInputFromWindow(renamePromptView.getWindowToken(), 0);
 
-                                // If a new note name has been entered, then start background thread to update database
+                                // If a new note name has been entered, then queue database operation to update database
                                 final String newName = renamePromptEditTextNewName.getText().toString();
 
                                 if (!newName.equals("")) {
 
-                                    new Thread(new Runnable() {
+                                    DatabaseExecutor.submit(new Runnable() {
 
                                         public void run() {
 
-                                            // If Database is still in use by another thread, then wait
-                                            while (dbInUse) {
-
-                                                // Pause
-                                                try {
-
-                                                    Thread.sleep(dbinUsePause);
-                                                }
-                                                catch (Exception e) {
-
-                                                    //Log.d("A", "Exception to Thread Sleep Request");
-                                                }
-                                            }
-
-                                            dbInUse = true;
-
-                                            //Check to make sure that note name isn't already in use by another note
-                                            Cursor cursor = myNoteDb.getAllNames();
-                                            boolean noteNameAlreadyExistsFlag = false;
-
-                                            if (cursor.moveToFirst()) {
-
-                                                do {
-
-                                                    String recordNoteName = cursor.getString(NoteDBAdapter.COL_NAME);
-                                                    int recordRowId = cursor.getInt(NoteDBAdapter.COL_ROWID);
-
-                                                    // Only trip flag if note name is equal to name of already existing record that isn't the current record
-                                                    if ( (newName.equals(recordNoteName)) & (rowId != recordRowId) ) {
-
-                                                        noteNameAlreadyExistsFlag = true;
-
-                                                        break;
-                                                    }
-                                                }
-                                                while (cursor.moveToNext());
-
-                                                cursor.close();
-                                            }
-
-                                            // If note name is not in use, then change note name in database & inform Database Update Handler
-                                            if (!noteNameAlreadyExistsFlag) {
-
-                                                myNoteDb.changeName(rowId, newName);
-
-                                                dbInUse = false;
+                                            // Change note name in database (unless it's in use by another note) & inform Database Update Handler
+                                            if (myNoteDb.changeName(rowId, newName)) {
 
                                                 databaseUpdateHandler.sendEmptyMessage(NAME_CHANGED);
                                             }
@@ -461,13 +467,10 @@ public class BaseActivity extends AppCompatActivity {
 
                                                 // Name already exists
 
-                                                dbInUse = false;
-
                                                 databaseUpdateHandler.sendEmptyMessage(NAME_EXISTS);
                                             }
-
                                         }
-                                    }).start();
+                                    });
                                 }
                                 else {
 
@@ -510,16 +513,16 @@ public class BaseActivity extends AppCompatActivity {
         });
     }
 
-    // Displays Alert Dialog for adding or changing passcode & starts background thread to change passcode in database
+    // Displays Alert Dialog for adding or changing passcode & queues database operation to change passcode
     void changePasscodePrompt(final long rowId, final char[] incomingOldPasscode) {
 
-        // Setup background thread
-        class ChangePasscodeThread extends Thread {
+        // Setup database operation
+        class ChangePasscodeTask implements Runnable {
 
             private char[] oldPasscode;
             private char[] newPasscode;
 
-            ChangePasscodeThread(char[] inputOldPasscode, char[] inputNewPasscode) {
+            ChangePasscodeTask(char[] inputOldPasscode, char[] inputNewPasscode) {
 
                 oldPasscode = inputOldPasscode;
                 newPasscode = inputNewPasscode;
@@ -527,25 +530,14 @@ public class BaseActivity extends AppCompatActivity {
 
             public void run() {
 
-                // If Database is still in use by another thread, then wait
-                while (dbInUse) {
-
-                    // Pause
-                    try {
+                // Change Passcode in database (Nothing is written if old passcode doesn't decrypt note)
+                if (!myNoteDb.changePasscode(rowId, oldPasscode, newPasscode)) {
 
-                        Thread.sleep(dbinUsePause);
-                    }
-                    catch (Exception e) {
+                    databaseUpdateHandler.sendEmptyMessage(PASSCODE_NOT_CHANGED);
 
-                        //Log.d("A", "Exception to Thread Sleep Request");
-                    }
+                    return;
                 }
 
-                dbInUse = true;
-
-                // Change Passcode in database
-                myNoteDb.changePasscode(rowId, oldPasscode, newPasscode);
-
                 // Inform Database Update Handler
                 Bundle bundle = new Bundle();
                 bundle.putLong("rowid", rowId);
@@ -553,8 +545,6 @@ public class BaseActivity extends AppCompatActivity {
                 Message message = new Message();
                 message.setData(bundle);
 
-                dbInUse = false;
-
                 if (oldPasscode==null) {
 
                     message.what = PASSCODE_ADDED;
@@ -618,9 +608,8 @@ public class BaseActivity extends AppCompatActivity {
 
                                         if ( Arrays.equals(newPasscode, confirmPasscode) ) {
 
-                                            // Start background thread to change passcode in database
-                                            ChangePasscodeThread changePasscodeThread = new ChangePasscodeThread(incomingOldPasscode, newPasscode);
-                                            changePasscodeThread.start();
+                                            // Queue database operation to change passcode
+                                            DatabaseExecutor.submit(new ChangePasscodeTask(incomingOldPasscode, newPasscode));
                                         }
                                         else {
 
@@ -1051,6 +1040,7 @@ public class BaseActivity extends AppCompatActivity {
     public static class LinedEditText extends AppCompatEditText {
 
         private Paint mPaint = new Paint();
+        private Rect mClipBounds = new Rect();
 
         public LinedEditText(Context context) {
 
@@ -1091,10 +1081,12 @@ public class BaseActivity extends AppCompatActivity {
             //int height = getHeight();
             //int count = (height-paddingTop-paddingBottom) / lineHeight;
 
-            // Draw Max Lines
-            int count = maxLines;
+            // Draw Max Lines (Only lines within visible region, so long notes don't draw every line each frame)
+            canvas.getClipBounds(mClipBounds);
+            int first = Math.max(0, (mClipBounds.top - paddingTop) / lineHeight - 1);
+            int count = Math.min(maxLines, (mClipBounds.bottom - paddingTop) / lineHeight + 1);
 
-            for (int i = 0; i < count; i++) {
+            for (int i = first; i < count; i++) {
 
                 int baseline = lineHeight * (i+1) + paddingTop;
                 canvas.drawLine(left+paddingLeft, baseline, right-paddingRight, baseline, mPaint);
@@ -0,0 +1,155 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Deflate Stage applied to Note Bodies before encryption (Less to encrypt & save for repetitive text like lists & logs)
+// Deflated body is the original length (4 bytes) followed by raw Deflate data, so inflating fills an exactly sized array
+final class BodyCompression {
+
+    static final int LEVEL = Deflater.BEST_SPEED;                          // Most of the saving on text, at several times the speed of the default level
+    private static final int MIN_BODY_LENGTH = 512;                        // Shorter bodies aren't worth deflating
+    private static final int SAMPLE_LENGTH = 8 * 1024;                     // Longer bodies are only deflated if their start is worth deflating
+    private static final int HEADER_LENGTH = 4;
+
+    private BodyCompression() {
+
+    }
+
+    // Returns deflated body, or null if deflating doesn't save at least an eighth of the body
+    static byte[] deflate(byte[] body) {
+
+        if (body.length < MIN_BODY_LENGTH) {
+
+            return null;
+        }
+
+        Deflater deflater = new Deflater(LEVEL, true);
+
+        try {
+
+            // Incompressible bodies (e.g. pasted random keys) are skipped after a sample, not the whole body
+            if ( (body.length > 2 * SAMPLE_LENGTH) && (deflate(deflater, body, SAMPLE_LENGTH) == null) ) {
+
+                return null;
+            }
+
+            deflater.reset();
+
+            return deflate(deflater, body, body.length);
+        }
+        finally {
+
+            deflater.end();
+        }
+    }
+
+    // Deflates first length bytes of body, or returns null if that doesn't save at least an eighth
+    private static byte[] deflate(Deflater deflater, byte[] body, int bodyLength) {
+
+        int maxLength = bodyLength - (bodyLength / 8);
+
+        deflater.setInput(body, 0, bodyLength);
+        deflater.finish();
+
+        // Output stops at the largest length worth keeping, so incompressible bodies give up early
+        byte[] deflatedBody = new byte[maxLength];
+        deflatedBody[0] = (byte) (bodyLength >>> 24);
+        deflatedBody[1] = (byte) (bodyLength >>> 16);
+        deflatedBody[2] = (byte) (bodyLength >>> 8);
+        deflatedBody[3] = (byte) bodyLength;
+
+        int length = HEADER_LENGTH;
+
+        while (!deflater.finished() && (length < maxLength)) {
+
+            length += deflater.deflate(deflatedBody, length, maxLength - length);
+        }
+
+        if (!deflater.finished()) {
+
+            Arrays.fill(deflatedBody, (byte) 0);
+
+            return null;
+        }
+
+        byte[] result = Arrays.copyOf(deflatedBody, length);
+        Arrays.fill(deflatedBody, (byte) 0);
+
+        return result;
+    }
+
+    // Returns original body of a deflated body
+    static byte[] inflate(byte[] deflatedBody) throws DataFormatException {
+
+        if (deflatedBody.length < HEADER_LENGTH) {
+
+            throw new DataFormatException("Deflated Note Body has no length");
+        }
+
+        int length = ((deflatedBody[0] & 0xff) << 24) | ((deflatedBody[1] & 0xff) << 16) | ((deflatedBody[2] & 0xff) << 8) | (deflatedBody[3] & 0xff);
+        Inflater inflater = new Inflater(true);
+
+        try {
+
+            byte[] body = new byte[length];
+            int inflated = 0;
+
+            inflater.setInput(deflatedBody, HEADER_LENGTH, deflatedBody.length - HEADER_LENGTH);
+
+            while ( (inflated < length) && !inflater.finished() ) {
+
+                int count = inflater.inflate(body, inflated, length - inflated);
+
+                if ( (count == 0) && (inflater.needsInput() || inflater.needsDictionary()) ) {
+
+                    break;
+                }
+
+                inflated += count;
+            }
+
+            if (inflated != length) {
+
+                Arrays.fill(body, (byte) 0);
+
+                throw new DataFormatException("Deflated Note Body is truncated");
+            }
+
+            return body;
+        }
+        finally {
+
+            inflater.end();
+        }
+    }
+}
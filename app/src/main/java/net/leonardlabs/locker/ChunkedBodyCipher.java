@@ -0,0 +1,130 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+// Segmented Note Body Encryption, so long notes are saved, encrypted & decrypted one fixed size chunk at a time (Authenticated schemes only)
+// Each chunk's nonce is the note IV with the chunk index XORed into its last 4 bytes, & the index & final chunk flag are authenticated with it,
+// so chunks can't be reordered, dropped, or cut off the end without decryption failing
+final class ChunkedBodyCipher {
+
+    static final int CHUNK_SIZE = 64 * 1024;                               // Plaintext Bytes per Chunk (well under a Cursor Window)
+    static final int TAG_BYTES = EncryptionScheme.GCM_TAG_LENGTH / 8;      // Bytes added to each encrypted chunk
+
+    private ChunkedBodyCipher() {
+
+    }
+
+    // Returns number of chunks for body length (an empty body is saved as one empty chunk)
+    static int getChunkCount(int bodyLength) {
+
+        return Math.max(1, (bodyLength + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    // Splits unencrypted Note Body into chunks
+    static byte[][] split(byte[] body) {
+
+        byte[][] chunks = new byte[getChunkCount(body.length)][];
+
+        for (int i = 0; i < chunks.length; i++) {
+
+            chunks[i] = Arrays.copyOfRange(body, i * CHUNK_SIZE, Math.min(body.length, (i + 1) * CHUNK_SIZE));
+        }
+
+        return chunks;
+    }
+
+    // Encrypts Note Body into chunks
+    static byte[][] encrypt(EncryptionScheme scheme, SecretKey key, byte[] iv, byte[] body) throws GeneralSecurityException {
+
+        Cipher cipher = getCipher(scheme);
+        byte[] nonce = new byte[iv.length];
+        byte[][] chunks = new byte[getChunkCount(body.length)][];
+
+        for (int i = 0; i < chunks.length; i++) {
+
+            int offset = i * CHUNK_SIZE;
+            int length = Math.min(CHUNK_SIZE, body.length - offset);
+
+            cipher.init(Cipher.ENCRYPT_MODE, key, getChunkParameterSpec(iv, nonce, i));
+            cipher.updateAAD(getAssociatedData(i, i == chunks.length - 1));
+            chunks[i] = cipher.doFinal(body, offset, length);
+        }
+
+        Arrays.fill(nonce, (byte) 0);
+
+        return chunks;
+    }
+
+    // Decrypts one chunk into output at offset & returns number of bytes written (AEADBadTagException if chunk isn't authentic)
+    static int decryptChunk(EncryptionScheme scheme, SecretKey key, byte[] iv, int index, boolean last, byte[] chunk, byte[] output, int offset) throws GeneralSecurityException {
+
+        Cipher cipher = getCipher(scheme);
+
+        cipher.init(Cipher.DECRYPT_MODE, key, getChunkParameterSpec(iv, new byte[iv.length], index));
+        cipher.updateAAD(getAssociatedData(index, last));
+
+        return cipher.doFinal(chunk, 0, chunk.length, output, offset);
+    }
+
+    private static Cipher getCipher(EncryptionScheme scheme) throws GeneralSecurityException {
+
+        if (!scheme.authenticatedEncryption) {
+
+            throw new InvalidAlgorithmParameterException("Chunked Note Body needs an authenticated scheme");
+        }
+
+        return CryptoContext.get().getCipher(scheme.encryptionType);
+    }
+
+    // Nonce is written into the supplied buffer (GCMParameterSpec keeps its own copy)
+    private static GCMParameterSpec getChunkParameterSpec(byte[] iv, byte[] nonce, int index) {
+
+        System.arraycopy(iv, 0, nonce, 0, iv.length);
+
+        nonce[iv.length - 4] ^= (byte) (index >>> 24);
+        nonce[iv.length - 3] ^= (byte) (index >>> 16);
+        nonce[iv.length - 2] ^= (byte) (index >>> 8);
+        nonce[iv.length - 1] ^= (byte) index;
+
+        return new GCMParameterSpec(EncryptionScheme.GCM_TAG_LENGTH, nonce);
+    }
+
+    // Chunk Index (4 bytes) & Final Chunk Flag
+    private static byte[] getAssociatedData(int index, boolean last) {
+
+        return new byte[] {(byte) (index >>> 24), (byte) (index >>> 16), (byte) (index >>> 8), (byte) index, (byte) (last ? 1 : 0)};
+    }
+}
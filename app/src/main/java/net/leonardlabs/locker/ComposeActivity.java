@@ -29,7 +29,6 @@ package net.leonardlabs.locker;
 
 import android.content.Context;
 import android.content.DialogInterface;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.Toolbar;
@@ -99,7 +98,7 @@ public class ComposeActivity extends BaseActivity {
             @Override
             public void onClick(View view) {
 
-                if (!duringEncryptingGraphicalEffect & !dbInUse) {
+                if (!duringEncryptingGraphicalEffect & !DatabaseExecutor.isBusy()) {
 
                     String bodyString = composeEditTextNoteBody.getText().toString();                   // toString Security Vulnerability
 
@@ -224,7 +223,7 @@ public class ComposeActivity extends BaseActivity {
             if ( bodyString.length() > 0 ) {
 
                 // If Database is in use, do nothing, otherwise prompt user to save
-                if (!dbInUse) {
+                if (!DatabaseExecutor.isBusy()) {
 
                     // Setup Save Confirmation Alert Dialog
                     LayoutInflater layoutInflater = LayoutInflater.from(this);
@@ -317,50 +316,13 @@ public class ComposeActivity extends BaseActivity {
 
                                 if (!newNoteName.equals("")) {
 
-                                    // Start Background Thread to Check if Note Name already exists & insert new note (encrypting if necesary)
-                                    new Thread(new Runnable() {
+                                    // Queue Database Operation to Check if Note Name already exists & insert new note (encrypting if necesary)
+                                    DatabaseExecutor.submit(new Runnable() {
 
                                         public void run() {
 
-                                            // If Database is still in use by another thread, then wait
-                                            while (dbInUse) {
-
-                                                // Delay
-                                                try {
-
-                                                    Thread.sleep(dbinUsePause);
-                                                }
-                                                catch (Exception e) {
-
-                                                    //Log.d("A", "Exception to Thread Sleep Request");
-                                                }
-                                            }
-
                                             // Check if Note Name is already in use by another note
-                                            dbInUse = true;
-                                            Cursor cursor = myNoteDb.getAllNames();
-                                            boolean noteNameAlreadyExistsFlag = false;
-
-                                            if (cursor.moveToFirst()) {
-
-                                                do {
-
-                                                    String recordNoteName = cursor.getString(NoteDBAdapter.COL_NAME);
-
-                                                    // Only trip flag if note name is equal to name of already existing record
-                                                    if (newNoteName.equals(recordNoteName)) {
-
-                                                        noteNameAlreadyExistsFlag = true;
-
-                                                        break;
-                                                    }
-                                                }
-                                                while (cursor.moveToNext());
-
-                                                cursor.close();
-                                            }
-
-                                            dbInUse = false;
+                                            boolean noteNameAlreadyExistsFlag = myNoteDb.nameExists(newNoteName);
 
                                             // If Name doesn't already exist, then proceed, otherwise alert user
                                             if (!noteNameAlreadyExistsFlag) {
@@ -433,26 +395,15 @@ public class ComposeActivity extends BaseActivity {
 
                                                             databaseUpdateHandler.sendEmptyMessage(ENCRYPTING);
 
-                                                            // If Database is still in use by another thread, then wait
-                                                            while (dbInUse) {
-
-                                                                // Delay
-                                                                try {
-
-                                                                    Thread.sleep(dbinUsePause);
-                                                                }
-                                                                catch (Exception e) {
+                                                            // Save New Note in Database (name is only taken if saved elsewhere since the check)
+                                                            if (myNoteDb.insertIfNameFree(newNoteName, bodyString.getBytes(), newPasscode)) {
 
-                                                                    //Log.d("A", "Exception to Thread Sleep Request");
-                                                                }
+                                                                databaseUpdateHandler.sendEmptyMessage(NOTE_SAVED);
                                                             }
+                                                            else {
 
-                                                            // Save New Note in Database
-                                                            dbInUse = true;
-                                                            myNoteDb.insertNote(newNoteName, bodyString.getBytes(), newPasscode);
-                                                            dbInUse = false;
-
-                                                            databaseUpdateHandler.sendEmptyMessage(NOTE_SAVED);
+                                                                databaseUpdateHandler.sendEmptyMessage(NAME_EXISTS);
+                                                            }
                                                         }
                                                         else {
 
@@ -505,26 +456,15 @@ public class ComposeActivity extends BaseActivity {
                                                         }
                                                     });
 
-                                                    // If Database is still in use by another thread, then wait
-                                                    while (dbInUse) {
-
-                                                        // Delay
-                                                        try {
+                                                    // Save Note in Database (name is only taken if saved elsewhere since the check)
+                                                    if (myNoteDb.insertIfNameFree(newNoteName, bodyString.getBytes(), null)) {
 
-                                                            Thread.sleep(dbinUsePause);
-                                                        }
-                                                        catch (Exception e) {
-
-                                                            //Log.d("A", "Exception to Thread Sleep Request");
-                                                        }
+                                                        databaseUpdateHandler.sendEmptyMessage(NOTE_SAVED);
                                                     }
+                                                    else {
 
-                                                    // Save Note in Database
-                                                    dbInUse = true;
-                                                    myNoteDb.insertNote(newNoteName, bodyString.getBytes(), null);
-                                                    dbInUse = false;
-
-                                                    databaseUpdateHandler.sendEmptyMessage(NOTE_SAVED);
+                                                        databaseUpdateHandler.sendEmptyMessage(NAME_EXISTS);
+                                                    }
 
                                                     // Return to Main
                                                     finish();
@@ -554,7 +494,7 @@ public class ComposeActivity extends BaseActivity {
                                                 databaseUpdateHandler.sendEmptyMessage(NAME_EXISTS);
                                             }
                                         }
-                                    }).start();
+                                    });
                                 }
                                 else {
 
@@ -606,4 +546,3 @@ public class ComposeActivity extends BaseActivity {
     }
 }
 
-
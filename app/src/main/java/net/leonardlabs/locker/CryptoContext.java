@@ -0,0 +1,143 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKeyFactory;
+
+// Thread Confined Crypto Primitives, so encrypting & decrypting notes does no provider lookups or SecureRandom construction
+// Primitives are created on first use for each algorithm & reused by every scheme on that thread (init() resets their state)
+// Never share a Context or the primitives it returns with another thread
+final class CryptoContext {
+
+    private static final ThreadLocal<CryptoContext> CONTEXTS = new ThreadLocal<CryptoContext>() {
+
+        @Override
+        protected CryptoContext initialValue() {
+
+            return new CryptoContext();
+        }
+    };
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Cipher> ciphers = new HashMap<>();
+    private final Map<String, Mac> macs = new HashMap<>();
+    private final Map<String, SecretKeyFactory> keyFactories = new HashMap<>();
+    private final Map<String, MessageDigest> digests = new HashMap<>();
+
+    private CryptoContext() {
+
+    }
+
+    // Returns Context of the calling thread
+    static CryptoContext get() {
+
+        return CONTEXTS.get();
+    }
+
+    SecureRandom getRandom() {
+
+        return random;
+    }
+
+    // Returns new array of random bytes
+    byte[] randomBytes(int length) {
+
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    // Returns Cipher for transformation (caller must init before use)
+    Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+
+        Cipher cipher = ciphers.get(transformation);
+
+        if (cipher == null) {
+
+            cipher = Cipher.getInstance(transformation);
+            ciphers.put(transformation, cipher);
+        }
+
+        return cipher;
+    }
+
+    // Returns Mac for algorithm (caller must init before use)
+    Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+
+        Mac mac = macs.get(algorithm);
+
+        if (mac == null) {
+
+            mac = Mac.getInstance(algorithm);
+            macs.put(algorithm, mac);
+        }
+
+        return mac;
+    }
+
+    SecretKeyFactory getKeyFactory(String algorithm) throws NoSuchAlgorithmException {
+
+        SecretKeyFactory keyFactory = keyFactories.get(algorithm);
+
+        if (keyFactory == null) {
+
+            keyFactory = SecretKeyFactory.getInstance(algorithm);
+            keyFactories.put(algorithm, keyFactory);
+        }
+
+        return keyFactory;
+    }
+
+    // Returns reset Message Digest for algorithm
+    MessageDigest getDigest(String algorithm) throws NoSuchAlgorithmException {
+
+        MessageDigest digest = digests.get(algorithm);
+
+        if (digest == null) {
+
+            digest = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, digest);
+        }
+        else {
+
+            digest.reset();
+        }
+
+        return digest;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Single background thread which runs every Note Database write (& passcode check) in the order submitted, so no operation waits on a polled flag.
+// Plain reads don't need to be queued; with Write-Ahead Logging they run on any thread alongside the write in progress (UI reads go to a separate reader thread).
+// Operations are returned as Futures which callers may cancel (a running operation is interrupted, a queued one never runs).
+final class DatabaseExecutor {
+
+    private static final AtomicInteger pendingOperations = new AtomicInteger();
+    private static volatile Thread databaseThread;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "NoteDatabase");
+            databaseThread = thread;
+
+            return thread;
+        }
+    });
+
+    // Reader thread for UI triggered reads, so they never wait behind queued writes
+    private static final ExecutorService reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+
+            return new Thread(runnable, "NoteDatabaseReader");
+        }
+    });
+
+    private DatabaseExecutor() {
+    }
+
+    // Runs read-only operation on reader thread, alongside any write on database thread (Not counted as busy)
+    static void read(Runnable operation) {
+
+        reader.execute(operation);
+    }
+
+    // Queues operation & returns Future for cancelling
+    static Future<?> submit(Runnable operation) {
+
+        return submit(Executors.callable(operation));
+    }
+
+    // Queues operation & returns Future for result or cancelling
+    static <T> Future<T> submit(Callable<T> operation) {
+
+        FutureTask<T> task = new FutureTask<T>(operation) {
+
+            @Override
+            protected void done() {
+
+                // Runs once whether operation finished, failed, or was cancelled
+                pendingOperations.decrementAndGet();
+            }
+        };
+
+        pendingOperations.incrementAndGet();
+        executor.execute(task);
+
+        return task;
+    }
+
+    // Queues operation & waits for result (Runs directly if already on database thread).  If waiting thread is interrupted, then operation is cancelled & null is returned.
+    static <T> T call(Callable<T> operation) {
+
+        try {
+
+            if (Thread.currentThread() == databaseThread) {
+
+                return operation.call();
+            }
+
+            Future<T> future = submit(operation);
+
+            try {
+
+                return future.get();
+            }
+            catch (InterruptedException interrupted) {
+
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+
+                return null;
+            }
+            catch (CancellationException cancelled) {
+
+                return null;
+            }
+        }
+        catch (ExecutionException execution) {
+
+            throw new RuntimeException(execution.getCause());
+        }
+        catch (RuntimeException runtime) {
+
+            throw runtime;
+        }
+        catch (Exception exception) {
+
+            throw new RuntimeException(exception);
+        }
+    }
+
+    // True while any operation is queued or running (User actions which need the database are ignored until it is free)
+    static boolean isBusy() {
+
+        return pendingOperations.get() > 0;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+// Schema Migration Step, upgrading the database in place from (version - 1) to version, so saved notes are kept
+// Steps run in version order inside SQLiteOpenHelper's upgrade transaction, so an interrupted upgrade leaves the database at its old version
+// Steps only change schema & copy rows with set-based statements run inside SQLite (no note is read into Java).  Table rebuilds copy every
+// Note Body within the upgrade (BLOB Columns & Body Table steps), as Android's SQLite can't change a column's type or drop a column in place,
+// & a copy split across transactions would leave notes half in the old table.  Rewrites of each note (re-encryption, new storage formats)
+// are left to SchemeMigrationJob, which commits them in bounded batches after the database is open.
+abstract class DatabaseMigration {
+
+    final int version;
+    final String description;
+
+    DatabaseMigration(int version, String description) {
+
+        this.version = version;
+        this.description = description;
+    }
+
+    abstract void migrate(SQLiteDatabase db);
+
+    // Returns Step that runs SQL statements in order
+    static DatabaseMigration of(int version, String description, final String... statements) {
+
+        return new DatabaseMigration(version, description) {
+
+            @Override
+            void migrate(SQLiteDatabase db) {
+
+                for (String statement : statements) {
+
+                    db.execSQL(statement);
+                }
+            }
+        };
+    }
+
+    // Returns Step that repeats a statement while a count query finds rows (for fixes which can create new conflicts), then runs the remaining statements in order
+    static DatabaseMigration repeating(int version, String description, final String countQuery, final String repeatedStatement, final String... statements) {
+
+        return new DatabaseMigration(version, description) {
+
+            @Override
+            void migrate(SQLiteDatabase db) {
+
+                while (DatabaseUtils.longForQuery(db, countQuery, null) > 0) {
+
+                    db.execSQL(repeatedStatement);
+                }
+
+                for (String statement : statements) {
+
+                    db.execSQL(statement);
+                }
+            }
+        };
+    }
+
+    // Runs every step after oldVersion, up to & including newVersion
+    static void migrate(SQLiteDatabase db, DatabaseMigration[] migrations, int oldVersion, int newVersion) {
+
+        checkOrder(migrations);
+
+        for (DatabaseMigration migration : migrations) {
+
+            if ( (migration.version > oldVersion) && (migration.version <= newVersion) ) {
+
+                migration.migrate(db);
+            }
+        }
+    }
+
+    // Steps must start at version 2 & go up by one, so no version is skipped or run twice
+    static void checkOrder(DatabaseMigration[] migrations) {
+
+        for (int i = 0; i < migrations.length; i++) {
+
+            if (migrations[i].version != i + 2) {
+
+                throw new IllegalStateException("Migration to version " + migrations[i].version + " is out of order");
+            }
+        }
+    }
+}
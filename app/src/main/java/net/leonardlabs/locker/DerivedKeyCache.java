@@ -0,0 +1,201 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+// In-Memory cache of passcode derived key bytes for the current session, so key derivation only runs once per note & salt.
+// Entries are keyed by (rowId, salt) & only returned for the same passcode which derived them.  Key bytes are overwritten when evicted.
+class DerivedKeyCache {
+
+    // Default Time to Live of cached entries in ms ( 300,000 ms = 5 min )
+    static final long DEFAULT_TIME_TO_LIVE = 300000;
+
+    private final long timeToLive;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    DerivedKeyCache(long timeToLive) {
+
+        this.timeToLive = timeToLive;
+    }
+
+    // Returns copy of cached derived bytes, or null if not cached, expired, or derived from a different passcode
+    synchronized byte[] get(long rowId, byte[] salt, char[] passcode) {
+
+        String entryKey = entryKey(rowId, salt);
+        Entry entry = entries.get(entryKey);
+
+        if (entry == null) {
+
+            return null;
+        }
+
+        if (System.currentTimeMillis() >= entry.expiry) {
+
+            entry.wipe();
+            entries.remove(entryKey);
+
+            return null;
+        }
+
+        byte[] passcodeDigest = digestPasscode(passcode, entry.passcodeDigestSalt);
+
+        if ( (passcodeDigest == null) || !MessageDigest.isEqual(passcodeDigest, entry.passcodeDigest) ) {
+
+            return null;
+        }
+
+        return Arrays.copyOf(entry.derivedBytes, entry.derivedBytes.length);
+    }
+
+    // Stores copy of derived bytes for rowId & salt (replacing & wiping any previous entry)
+    synchronized void put(long rowId, byte[] salt, char[] passcode, byte[] derivedBytes) {
+
+        byte[] passcodeDigestSalt = new byte[16];
+        random.nextBytes(passcodeDigestSalt);
+
+        byte[] passcodeDigest = digestPasscode(passcode, passcodeDigestSalt);
+
+        if (passcodeDigest == null) {
+
+            return;
+        }
+
+        Entry entry = new Entry();
+        entry.derivedBytes = Arrays.copyOf(derivedBytes, derivedBytes.length);
+        entry.passcodeDigestSalt = passcodeDigestSalt;
+        entry.passcodeDigest = passcodeDigest;
+        entry.expiry = System.currentTimeMillis() + timeToLive;
+
+        Entry previousEntry = entries.put(entryKey(rowId, salt), entry);
+
+        if (previousEntry != null) {
+
+            previousEntry.wipe();
+        }
+    }
+
+    // Wipes & removes all entries for a note (after deletion or passcode change)
+    synchronized void evict(long rowId) {
+
+        String rowIdPrefix = rowId + ":";
+        Iterator<HashMap.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+
+            HashMap.Entry<String, Entry> mapEntry = iterator.next();
+
+            if (mapEntry.getKey().startsWith(rowIdPrefix)) {
+
+                mapEntry.getValue().wipe();
+                iterator.remove();
+            }
+        }
+    }
+
+    // Wipes & removes every entry (end of session)
+    synchronized void evictAll() {
+
+        for (Entry entry : entries.values()) {
+
+            entry.wipe();
+        }
+
+        entries.clear();
+    }
+
+    private static String entryKey(long rowId, byte[] salt) {
+
+        StringBuilder builder = new StringBuilder(salt.length * 2 + 21);
+        builder.append(rowId).append(':');
+
+        for (byte saltByte : salt) {
+
+            builder.append(Character.forDigit((saltByte >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(saltByte & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+
+    // Salted SHA-256 digest of passcode, used only to confirm a cached entry belongs to the same passcode
+    private static byte[] digestPasscode(char[] passcode, byte[] passcodeDigestSalt) {
+
+        if (passcode == null) {
+
+            return null;
+        }
+
+        byte[] passcodeBytes = new byte[passcode.length * 2];
+
+        for (int i = 0; i < passcode.length; i++) {
+
+            passcodeBytes[2 * i] = (byte) (passcode[i] >> 8);
+            passcodeBytes[2 * i + 1] = (byte) passcode[i];
+        }
+
+        try {
+
+            MessageDigest digest = CryptoContext.get().getDigest("SHA-256");
+            digest.update(passcodeDigestSalt);
+            digest.update(passcodeBytes);
+
+            return digest.digest();
+        }
+        catch (NoSuchAlgorithmException noSuchAlgorithm) {
+
+            //Log.d("A", "No Such Alogrithm Exception!  Passcode digest not generated!");
+
+            return null;
+        }
+        finally {
+
+            Arrays.fill(passcodeBytes, (byte) 0);
+        }
+    }
+
+    private static class Entry {
+
+        byte[] derivedBytes;
+        byte[] passcodeDigestSalt;
+        byte[] passcodeDigest;
+        long expiry;
+
+        void wipe() {
+
+            Arrays.fill(derivedBytes, (byte) 0);
+            Arrays.fill(passcodeDigest, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import android.os.Build;
+
+// Immutable Encryption Scheme Parameters, looked up by the Scheme Code saved with each note.
+// Nothing is shared between crypto operations except these read-only descriptors, so notes on different schemes can be encrypted & decrypted in parallel.
+final class EncryptionScheme {
+
+    // Encryption Scheme Codes
+    static final int BELOW_API_23 = 0;
+    static final int API_23_TO_25 = 1;
+    static final int API_26 = 2;
+    static final int SINGLE_KDF_BELOW_API_26 = 3;
+    static final int SINGLE_KDF_API_26 = 4;
+    static final int GCM_BELOW_API_26 = 5;
+    static final int GCM_API_26 = 6;
+    static final int ENVELOPE_BELOW_API_26 = 7;
+    static final int ENVELOPE_API_26 = 8;
+    static final int ENVELOPE_SCRYPT = 9;
+
+    static final int GCM_TAG_LENGTH = 128;                                  // Authentication Tag Length in Bits
+
+    // Memory-Hard Key Derivation Parameters (N = 2^14, r = 8, p = 1, the interactive login cost from the scrypt paper: 16 MB & about as slow as calibrated PBKDF2 on a mid-range phone)
+    static final int SCRYPT_MEMORY_COST = 16384;
+    static final int SCRYPT_BLOCK_SIZE = 8;
+    static final int SCRYPT_PARALLELIZATION = 1;
+
+    final int code;
+    final String passcodeHashAlgorithm;
+    final String passcodeKeyExtensionAlgorithm;
+    final String encryptionType;
+    final String keyType;
+    final int keyLength;                                                    // Key Length in Bits
+    final int iterationCount;                                              // Iterations for Passcode Hashing & Passcode Key Extension Algorithms (PBKDF2 only)
+    final KeyDerivationFunction kdf;                                       // Passcode Hashing & Key Extension
+    final boolean singlePassKdf;                                           // Passcode Verifier & Key are both expanded from a single Key Extension run
+    final int masterKeyLength;                                             // Single Pass Key Extension Output Length in Bits (one PRF block)
+    final boolean authenticatedEncryption;                                 // Authentication Tag verifies passcode during decryption (no separate verifier saved)
+    final int ivLength;                                                    // IV Length in Bytes
+    final boolean envelope;                                                // Body is encrypted with a random Data Key, which is saved wrapped by the passcode derived key
+
+    // Schemes indexed by Scheme Code
+    private static final EncryptionScheme[] SCHEMES = new EncryptionScheme[] {
+
+            new EncryptionScheme(BELOW_API_23, "PBKDF2WithHmacSHA1", "AES/CBC/PKCS5Padding", false, 0, false, 16, false),
+            new EncryptionScheme(API_23_TO_25, "PBKDF2WithHmacSHA1", "AES/CBC/PKCS5Padding", false, 0, false, 16, false),
+            new EncryptionScheme(API_26, "PBKDF2withHmacSHA256", "AES/CBC/PKCS5Padding", false, 0, false, 16, false),
+            new EncryptionScheme(SINGLE_KDF_BELOW_API_26, "PBKDF2WithHmacSHA1", "AES/CBC/PKCS5Padding", true, 160, false, 16, false),
+            new EncryptionScheme(SINGLE_KDF_API_26, "PBKDF2withHmacSHA256", "AES/CBC/PKCS5Padding", true, 256, false, 16, false),
+            new EncryptionScheme(GCM_BELOW_API_26, "PBKDF2WithHmacSHA1", "AES/GCM/NoPadding", true, 160, true, 12, false),
+            new EncryptionScheme(GCM_API_26, "PBKDF2withHmacSHA256", "AES/GCM/NoPadding", true, 256, true, 12, false),
+            new EncryptionScheme(ENVELOPE_BELOW_API_26, "PBKDF2WithHmacSHA1", "AES/GCM/NoPadding", true, 160, true, 12, true),
+            new EncryptionScheme(ENVELOPE_API_26, "PBKDF2withHmacSHA256", "AES/GCM/NoPadding", true, 256, true, 12, true),
+            new EncryptionScheme(ENVELOPE_SCRYPT, new ScryptKdf(SCRYPT_MEMORY_COST, SCRYPT_BLOCK_SIZE, SCRYPT_PARALLELIZATION))
+    };
+
+    // Scheme for new notes, based on API Level of Device
+    // Pure-Java scrypt is only fast enough on the ART compiler & heap sizes of API 26+ devices, older devices keep calibrated PBKDF2
+    private static final EncryptionScheme CURRENT = SCHEMES[(Build.VERSION.SDK_INT < 26) ? ENVELOPE_BELOW_API_26 : ENVELOPE_SCRYPT];
+
+    private EncryptionScheme(int code, String kdfAlgorithm, String encryptionType, boolean singlePassKdf, int masterKeyLength,
+                             boolean authenticatedEncryption, int ivLength, boolean envelope) {
+
+        this.code = code;
+        this.passcodeHashAlgorithm = kdfAlgorithm;
+        this.passcodeKeyExtensionAlgorithm = kdfAlgorithm;
+        this.encryptionType = encryptionType;
+        this.keyType = "AES";
+        this.keyLength = 256;
+        this.iterationCount = 5000;
+        this.kdf = new Pbkdf2Kdf(kdfAlgorithm, iterationCount);
+        this.singlePassKdf = singlePassKdf;
+        this.masterKeyLength = masterKeyLength;
+        this.authenticatedEncryption = authenticatedEncryption;
+        this.ivLength = ivLength;
+        this.envelope = envelope;
+    }
+
+    // Envelope Scheme with Memory-Hard Key Derivation
+    private EncryptionScheme(int code, ScryptKdf kdf) {
+
+        this.code = code;
+        this.passcodeHashAlgorithm = "scrypt";
+        this.passcodeKeyExtensionAlgorithm = "scrypt";
+        this.encryptionType = "AES/GCM/NoPadding";
+        this.keyType = "AES";
+        this.keyLength = 256;
+        this.iterationCount = 0;
+        this.kdf = kdf;
+        this.singlePassKdf = true;
+        this.masterKeyLength = 256;
+        this.authenticatedEncryption = true;
+        this.ivLength = 12;
+        this.envelope = true;
+    }
+
+    // Copy of PBKDF2 scheme with a different Iteration Count
+    private EncryptionScheme(EncryptionScheme scheme, int iterationCount) {
+
+        this.code = scheme.code;
+        this.passcodeHashAlgorithm = scheme.passcodeHashAlgorithm;
+        this.passcodeKeyExtensionAlgorithm = scheme.passcodeKeyExtensionAlgorithm;
+        this.encryptionType = scheme.encryptionType;
+        this.keyType = scheme.keyType;
+        this.keyLength = scheme.keyLength;
+        this.iterationCount = iterationCount;
+        this.kdf = new Pbkdf2Kdf(scheme.passcodeKeyExtensionAlgorithm, iterationCount);
+        this.singlePassKdf = scheme.singlePassKdf;
+        this.masterKeyLength = scheme.masterKeyLength;
+        this.authenticatedEncryption = scheme.authenticatedEncryption;
+        this.ivLength = scheme.ivLength;
+        this.envelope = scheme.envelope;
+    }
+
+    // Returns Scheme for saved Scheme Code
+    static EncryptionScheme forCode(int code) {
+
+        if ( (code < 0) || (code >= SCHEMES.length) ) {
+
+            throw new IllegalArgumentException("Unknown encryption scheme " + code);
+        }
+
+        return SCHEMES[code];
+    }
+
+    // Returns Scheme used for new notes & for notes migrated on save (with default Iteration Count)
+    static EncryptionScheme current() {
+
+        return CURRENT;
+    }
+
+    // True if Key Extension cost is set by an Iteration Count (PBKDF2), false for memory-hard schemes with fixed cost
+    boolean hasIterationCount() {
+
+        return kdf instanceof Pbkdf2Kdf;
+    }
+
+    // Returns Scheme with saved Iteration Count (Notes saved before calibration have none saved & use the scheme default, memory-hard schemes have fixed cost)
+    EncryptionScheme withIterationCount(int savedIterationCount) {
+
+        if ( (savedIterationCount <= 0) || (savedIterationCount == iterationCount) || !hasIterationCount() ) {
+
+            return this;
+        }
+
+        return new EncryptionScheme(this, savedIterationCount);
+    }
+
+    // Schemes are equal if they have the same Scheme Code & Iteration Count (all other parameters follow from the code)
+    @Override
+    public boolean equals(Object other) {
+
+        if (!(other instanceof EncryptionScheme)) {
+
+            return false;
+        }
+
+        EncryptionScheme scheme = (EncryptionScheme) other;
+
+        return (code == scheme.code) && (iterationCount == scheme.iterationCount);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return 31 * code + iterationCount;
+    }
+}
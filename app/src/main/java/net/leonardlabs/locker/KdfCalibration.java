@@ -0,0 +1,187 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Per-Device Key Extension Calibration.  Run once at first launch, it benchmarks the current scheme's key extension & picks the Iteration Count
+// which meets the target unlock latency on this device.  New notes are saved with the calibrated count (stored per note, so older notes keep their own cost).
+final class KdfCalibration {
+
+    static final long TARGET_UNLOCK_MILLIS = 250;                          // Target time of one passcode derivation
+    static final int MIN_ITERATION_COUNT = 5000;                           // Fixed count used before calibration (no device is calibrated below it)
+    static final int MAX_ITERATION_COUNT = 2000000;
+
+    private static final int BENCHMARK_ITERATION_COUNT = 2000;             // Iterations per benchmark derivation
+    private static final long BENCHMARK_MILLIS = 250;                      // Derivations are repeated for at least this long (a few runs would be lost in timer & scheduling noise)
+
+    private static final String PREFERENCES_NAME = "kdfCalibration";
+    private static final String KEY_ITERATION_COUNT = "iterationCount";
+    private static final String KEY_ITERATIONS_PER_SECOND = "iterationsPerSecond";
+
+    private static final AtomicBoolean calibrationQueued = new AtomicBoolean();   // Calibration is only queued once per process
+
+    private static final char[] BENCHMARK_PASSCODE = "calibration".toCharArray();
+    private static final byte[] BENCHMARK_SALT = new byte[32];
+
+    private KdfCalibration() {
+    }
+
+    // True once calibration has been run & saved on this device (or current scheme is memory-hard, with nothing to calibrate)
+    static boolean isCalibrated(Context context) {
+
+        return !EncryptionScheme.current().hasIterationCount() || (getPreferences(context).getInt(KEY_ITERATION_COUNT, 0) > 0);
+    }
+
+    // Queues calibration on the database thread if this device isn't calibrated yet (Notes saved meanwhile wait for it, so they get the calibrated count)
+    static void calibrateInBackground(Context context) {
+
+        if (isCalibrated(context) || !calibrationQueued.compareAndSet(false, true)) {
+
+            return;
+        }
+
+        final Context applicationContext = context.getApplicationContext();
+
+        DatabaseExecutor.submit(new Runnable() {
+
+            public void run() {
+
+                if (!isCalibrated(applicationContext)) {
+
+                    calibrate(applicationContext);
+                }
+            }
+        });
+    }
+
+    // Benchmarks key extension & saves calibrated Iteration Count (Runs for at least a quarter of a second, so must not be called on UI thread)
+    static void calibrate(Context context) {
+
+        if (!EncryptionScheme.current().hasIterationCount()) {
+
+            return;
+        }
+
+        long iterationsPerSecond = measureIterationsPerSecond(EncryptionScheme.current());
+
+        if (iterationsPerSecond <= 0) {
+
+            return;
+        }
+
+        long iterationCount = iterationsPerSecond * TARGET_UNLOCK_MILLIS / 1000;
+        iterationCount = Math.max(MIN_ITERATION_COUNT, Math.min(MAX_ITERATION_COUNT, iterationCount));
+
+        getPreferences(context).edit()
+                .putInt(KEY_ITERATION_COUNT, (int) iterationCount)
+                .putLong(KEY_ITERATIONS_PER_SECOND, iterationsPerSecond)
+                .apply();
+    }
+
+    // Returns calibrated Iteration Count for new notes, or 0 if not calibrated (scheme default is used)
+    static int getIterationCount(Context context) {
+
+        return getPreferences(context).getInt(KEY_ITERATION_COUNT, 0);
+    }
+
+    // Returns measured Key Extension iterations per second, or 0 if not calibrated
+    static long getIterationsPerSecond(Context context) {
+
+        return getPreferences(context).getLong(KEY_ITERATIONS_PER_SECOND, 0);
+    }
+
+    // Returns measured passcode derivations per second at the calibrated Iteration Count, or 0 if not calibrated
+    static double getDerivationsPerSecond(Context context) {
+
+        int iterationCount = getIterationCount(context);
+
+        if (iterationCount <= 0) {
+
+            return 0;
+        }
+
+        return (double) getIterationsPerSecond(context) / iterationCount;
+    }
+
+    // Times Key Extension of one PRF block (as used for unlocking) for at least the benchmark time & returns iterations per second, or 0 if algorithm isn't available
+    static long measureIterationsPerSecond(EncryptionScheme scheme) {
+
+        long derivations = 0;
+        long elapsedNanos;
+
+        try {
+
+            SecretKeyFactory keyFactory = CryptoContext.get().getKeyFactory(scheme.passcodeKeyExtensionAlgorithm);
+            PBEKeySpec keySpec = new PBEKeySpec(BENCHMARK_PASSCODE, BENCHMARK_SALT, BENCHMARK_ITERATION_COUNT, scheme.masterKeyLength);
+
+            // Warm up run isn't timed
+            keyFactory.generateSecret(keySpec);
+
+            long start = System.nanoTime();
+            long benchmarkNanos = BENCHMARK_MILLIS * 1000000L;
+
+            do {
+
+                keyFactory.generateSecret(keySpec);
+                derivations++;
+                elapsedNanos = System.nanoTime() - start;
+            }
+            while (elapsedNanos < benchmarkNanos);
+
+            keySpec.clearPassword();
+        }
+        catch (NoSuchAlgorithmException noSuchAlgorithm) {
+
+            //Log.d("A", "No Such Alogrithm Exception!  Key Extension not calibrated!");
+
+            return 0;
+        }
+        catch (InvalidKeySpecException invalidKeySpec) {
+
+            //Log.d("A", "Invalid Key Spec Exception!  Key Extension not calibrated!");
+
+            return 0;
+        }
+
+        return derivations * BENCHMARK_ITERATION_COUNT * 1000000000L / elapsedNanos;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
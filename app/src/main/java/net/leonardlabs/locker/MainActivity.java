@@ -31,15 +31,16 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
-import android.database.MatrixCursor;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AlertDialog;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.PopupMenu;
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
 import android.view.KeyEvent;
@@ -49,36 +50,29 @@ import android.view.MenuInflater;
 import android.view.View;
 import android.view.MenuItem;
 import android.view.inputmethod.InputMethodManager;
-import android.widget.AdapterView;
 import android.widget.EditText;
-import android.widget.ListView;
-import android.widget.SimpleCursorAdapter;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Map;
+import java.util.Set;
 
 public class MainActivity extends BaseActivity {
 
     Toolbar mainToolbar;
     FloatingActionButton mainFloatingActionButtonCompose;
     TextView mainTextViewEncryptedBackground;
-    ListView  mainListViewNoteList;
+    RecyclerView mainListViewNoteList;
     TextView mainTextViewNoNotesMessage;
 
     private static Handler mainListHandler;
-    private static SimpleCursorAdapter mainListCursorAdapter;
-    private static MatrixCursor displayNoteListCursor;
-    private static MainListLoaderThread mainListLoaderThread;
-    private Context listContext;
-
-    private static boolean displayRefreshInProgress = false;
+    private NoteListAdapter mainListAdapter;
+    private static final RefreshScheduler mainListRefreshScheduler = new RefreshScheduler(new MainListLoader(), "MainListLoader");
+    private static NoteListSnapshot lastPublishedPage = new NoteListSnapshot();     // Page each new page is diffed from (Only read & written by Main List Loader, which runs one load at a time)
 
     // Main List Handler Codes
-    private static final int INITIALIZE_LIST = 0;
     private static final int UPDATE_LIST = 1;
-    private static final int NO_NOTES = 2;
+    private static final int MIGRATION_PROGRESS = 2;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -98,91 +92,80 @@ public class MainActivity extends BaseActivity {
         mainToolbar = findViewById(R.id.mainToolbar);
         setSupportActionBar(mainToolbar);
         mainToolbar.setTitle("Notes (0)");
-        
+
+        // Setup Main Note List (Recycled Rows, divided as a List View's were)
+        mainListViewNoteList.setLayoutManager(new LinearLayoutManager(this));
+        mainListViewNoteList.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+
         registerMainListHandler();
         setupMainListeners();
-    }
-
-    // Setup Handler to Update Main Note List
-    private void registerMainListHandler() {
 
-        mainListHandler = new Handler(Looper.getMainLooper()) {
+        // Calibrate Key Extension Iteration Count for this device (once, at first launch)
+        KdfCalibration.calibrateInBackground(this);
 
-            int numOfnotes;
-            int noteCounter;
+        // Migrate notes saved with older schemes or storage format (only at first start, not on recreation)
+        if (savedInstanceState == null) {
 
-            @Override
-            public void handleMessage(Message message) {
-
-                Bundle bundle;
-
-                switch(message.what) {
+            startSchemeMigration();
+        }
+    }
 
-                    case INITIALIZE_LIST:
+    // Starts Background Scheme Migration of notes which can be decrypted without a passcode (Encrypted notes are migrated when next unlocked)
+    private void startSchemeMigration() {
 
-                        // Initializes a New List by initializing cursor & cursor adapter, & linking cursor, cursor adapter, & list view
+        SchemeMigrationJob schemeMigrationJob = new SchemeMigrationJob(myNoteDb, new SchemeMigrationJob.Listener() {
 
-                        String[] fromFieldNames = new String[]{NoteDBAdapter.KEY_NAME, "date", "time", "encryptedMarkerImageUri"};
-                        int[] toViewIDs = new int[]{R.id.mainTextViewName, R.id.mainTextViewDate, R.id.mainTextViewTime, R.id.mainImageViewEncryptedMarker};
-                        displayNoteListCursor = new MatrixCursor(new String[]{NoteDBAdapter.KEY_ROWID, NoteDBAdapter.KEY_NAME, "date", "time", "encryptedMarkerImageUri"});
+            public void onProgress(int done, int total) {
 
-                        mainListCursorAdapter =
-                                new SimpleCursorAdapter(
-                                        listContext,               // Context
-                                        R.layout.main_note_row,    // Row layout template
-                                        displayNoteListCursor,     // cursor (set of DB records to map)
-                                        fromFieldNames,            // DB Column names
-                                        toViewIDs,                 // View IDs to put information in
-                                        0                    // Automatic Requery (0 = false, 1 = true)
-                                );
+                mainListHandler.obtainMessage(MIGRATION_PROGRESS, done, total).sendToTarget();
+            }
 
-                        mainListViewNoteList.setAdapter(mainListCursorAdapter);
+            public void onFinished(int migrated) {
 
-                        // Extract Number of Records from List Loader Thread Message & Update Toolbar Title
-                        bundle = message.getData();
-                        numOfnotes = bundle.getInt("numofrecords");
-                        noteCounter = 0;
+                // Clears Progress Subtitle
+                mainListHandler.obtainMessage(MIGRATION_PROGRESS, 0, 0).sendToTarget();
 
-                        mainToolbar.setTitle("Notes (" + numOfnotes + ")");
+                if (migrated > 0) {
 
-                        break;
+                    Message message = new Message();
+                    message.what = NOTES_MIGRATED;
+                    message.arg1 = migrated;
+                    databaseUpdateHandler.sendMessage(message);
+                }
+            }
+        });
 
-                    case UPDATE_LIST:
+        new Thread(schemeMigrationJob).start();
+    }
 
-                        // Update List with New Note supplied from List Loader Background Thread
+    // Setup Handler to Update Main Note List
+    private void registerMainListHandler() {
 
-                        // If No Notes Text View is set to visibile due to there previously being zero notes, then set to invisible
-                        if (mainTextViewNoNotesMessage.getVisibility()==View.VISIBLE) {
+        mainListHandler = new Handler(Looper.getMainLooper()) {
 
-                            mainTextViewNoNotesMessage.setVisibility(View.INVISIBLE);
-                        }
+            @Override
+            public void handleMessage(Message message) {
 
-                        // Extract New Note Row Informtion from List Loader Thread Message
-                        bundle = message.getData();
-                        long rowId = bundle.getLong("rowid");
-                        String name = bundle.getString("name");
-                        String date = bundle.getString("date");
-                        String time = bundle.getString("time");
-                        String marker = bundle.getString("marker");
+                switch(message.what) {
 
-                        // Add New Row to Cursor, & notify data set is changed to automatically update list view
-                        displayNoteListCursor.addRow(new Object[]{rowId, name, date, time, marker});
-                        mainListCursorAdapter.notifyDataSetChanged();
+                    case UPDATE_LIST:
 
-                        noteCounter++;
+                        // Update List with Page of Notes supplied from List Loader Background Thread (applied as diff from page shown)
+                        NoteListAdapter.Update update = (NoteListAdapter.Update) message.obj;
+                        NoteListSnapshot page = update.page;
 
-                        // Close Cursor if last note
-                        if ((displayNoteListCursor != null) & (noteCounter==numOfnotes)) {
+                        mainListAdapter.apply(update);
+                        mainToolbar.setTitle("Notes (" + page.total + ")");
 
-                            displayNoteListCursor.close();
-                        }
+                        // Display "No Notes" View only if there are no notes to load
+                        mainTextViewNoNotesMessage.setVisibility((page.total == 0) ? View.VISIBLE : View.INVISIBLE);
 
                         break;
 
-                    case NO_NOTES:
+                    case MIGRATION_PROGRESS:
 
-                        // No notes to load.  Display "No Notes" View
-                        mainTextViewNoNotesMessage.setVisibility(View.VISIBLE);
+                        // Show Scheme Migration Progress under title until job finishes (arg1 of arg2 notes, arg2 is 0 when finished)
+                        mainToolbar.setSubtitle((message.arg2 > 0) ? "Upgrading notes " + message.arg1 + " of " + message.arg2 : null);
 
                         break;
                 }
@@ -199,7 +182,7 @@ public class MainActivity extends BaseActivity {
             public void onClick(View view) {
 
                 // If database is in use, do nothing
-                if (!dbInUse) {
+                if (!DatabaseExecutor.isBusy()) {
 
                     Intent intent = new Intent(MainActivity.this,ComposeActivity.class);
                     startActivityForResult(intent, NOTE_ACTIVITY_REQUEST);
@@ -207,95 +190,123 @@ public class MainActivity extends BaseActivity {
             }
         });
 
-        // Note Click Listener to Open Individual Note (Start Note View Activity)
-        mainListViewNoteList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Main Note List Adapter, with Note Click Listeners (Rows are supplied in pages by List Loader Background Thread)
+        mainListAdapter = new NoteListAdapter(new NoteListAdapter.NoteClickListener() {
 
+            // Note Click Listener to Open Individual Note (Start Note View Activity)
             @Override
-            public void onItemClick(AdapterView<?> parent, View viewClicked,
-                                    int position, final long idInDB) {
+            public void onNoteClick(final long idInDB) {
 
                 // If database is in use, do nothing
-                if (!dbInUse) {
+                if (!DatabaseExecutor.isBusy()) {
 
-                    dbInUse = true;
-                    boolean isNoteLocked = myNoteDb.isNoteLocked(idInDB);
-                    dbInUse = false;
+                    // Check if note is locked on reader thread (alongside any write), and open if not
+                    DatabaseExecutor.read(new Runnable() {
 
-                    // Check if note is locked, and open if not
-                    if (!isNoteLocked) {
+                        public void run() {
 
-                        // Note is not Locked
-                        // Start Note View Activity & pass database rowId for appropriate record & random body string
+                            final boolean isNoteLocked = myNoteDb.isNoteLocked(idInDB);
 
-                        Intent intent = new Intent(MainActivity.this, NoteViewActivity.class);
-                        intent.putExtra("rowId", idInDB);
-                        intent.putExtra("randombodyeffectchars", randomBodyEffectChars);
-                        intent.putExtra("currentbodyeffectorientation", currentBodyEffectOrientation);
-                        startActivityForResult(intent, NOTE_ACTIVITY_REQUEST);
-                    }
-                    else {
+                            mainListViewNoteList.post(new Runnable() {
 
-                        // Note is Locked
-                        Toast.makeText(getApplicationContext(), "Note is locked!", Toast.LENGTH_LONG).show();
-                    }
+                                public void run() {
+
+                                    if (isFinishing()) {
+
+                                        return;
+                                    }
+
+                                    if (!isNoteLocked) {
+
+                                        // Note is not Locked
+                                        // Start Note View Activity & pass database rowId for appropriate record & random body string
+
+                                        Intent intent = new Intent(MainActivity.this, NoteViewActivity.class);
+                                        intent.putExtra("rowId", idInDB);
+                                        intent.putExtra("randombodyeffectchars", randomBodyEffectChars);
+                                        intent.putExtra("currentbodyeffectorientation", currentBodyEffectOrientation);
+                                        startActivityForResult(intent, NOTE_ACTIVITY_REQUEST);
+                                    }
+                                    else {
+
+                                        // Note is Locked
+                                        Toast.makeText(getApplicationContext(), "Note is locked!", Toast.LENGTH_LONG).show();
+                                    }
+                                }
+                            });
+                        }
+                    });
                 }
             }
-        });
 
-        // Note Long Click Listener to bring up individual note menu
-        mainListViewNoteList.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
+            // Note Long Click Listener to bring up individual note menu (Encrypted flag is read from displayed row)
             @Override
-            public boolean onItemLongClick(AdapterView<?> adapterView, View view, int position, final long idInDB) {
+            public void onNoteLongClick(final View view, final long idInDB, final boolean encrypted) {
 
                 // If database is in use, do nothing
-                if (!dbInUse) {
+                if (!DatabaseExecutor.isBusy()) {
 
-                    dbInUse = true;
-                    boolean isNoteLocked = myNoteDb.isNoteLocked(idInDB);
-                    dbInUse = false;
+                    // Check if note is locked on reader thread (alongside any write), and inflate menu if not locked
+                    DatabaseExecutor.read(new Runnable() {
 
-                    // Check if note is locked, and inflate menu if not locked
-                    if (!isNoteLocked) {
+                        public void run() {
 
-                        // Note is not Locked.
+                            final boolean isNoteLocked = myNoteDb.isNoteLocked(idInDB);
 
-                        // Setup Note Action Menu
-                        PopupMenu popup = new PopupMenu(view.getContext(), view);
-                        MenuInflater inflater = popup.getMenuInflater();
+                            view.post(new Runnable() {
 
-                        dbInUse = true;
+                                public void run() {
 
-                        // Display different menu options depending on whether note is encrypted or not
-                        if (myNoteDb.getPasscodeHash(idInDB).equals("")) {
+                                    if (isFinishing()) {
 
-                            inflater.inflate(R.menu.plain_note_list_menu, popup.getMenu());
-                        }
-                        else {
+                                        return;
+                                    }
+
+                                    if (!isNoteLocked) {
+
+                                        showNoteMenu(view, idInDB, encrypted);
+                                    }
+                                    else {
 
-                            inflater.inflate(R.menu.encrypted_note_list_menu, popup.getMenu());
+                                        // Note is Locked.
+                                        Toast.makeText(getApplicationContext(), "Note is locked!", Toast.LENGTH_LONG).show();
+                                    }
+                                }
+                            });
                         }
+                    });
+                }
+            }
+        });
 
-                        dbInUse = false;
+        mainListViewNoteList.setAdapter(mainListAdapter);
+    }
 
-                        // Show Menu & Setup Click Listener
-                        popup.show();
-                        popup.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
+    // Shows Note Action Menu for an unlocked note
+    private void showNoteMenu(View view, final long idInDB, final boolean encrypted) {
 
-                            @Override
-                            public boolean onMenuItemClick(MenuItem item) {
+        // Setup Note Action Menu
+        PopupMenu popup = new PopupMenu(view.getContext(), view);
+        MenuInflater inflater = popup.getMenuInflater();
 
-                                noteListMenuAction(item.getItemId(), idInDB);
+        // Display different menu options depending on whether note is encrypted or not
+        if (!encrypted) {
 
-                                return true;
-                            }
-                        });
-                    }
-                    else {
+            inflater.inflate(R.menu.plain_note_list_menu, popup.getMenu());
+        }
+        else {
 
-                        // Note is Locked.
-                        Toast.makeText(getApplicationContext(), "Note is locked!", Toast.LENGTH_LONG).show();
-                    }
-                }
+            inflater.inflate(R.menu.encrypted_note_list_menu, popup.getMenu());
+        }
+
+        // Show Menu & Setup Click Listener
+        popup.show();
+        popup.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
+
+            @Override
+            public boolean onMenuItemClick(MenuItem item) {
+
+                noteListMenuAction(item.getItemId(), idInDB, encrypted);
 
                 return true;
             }
@@ -354,11 +365,8 @@ public class MainActivity extends BaseActivity {
 
         super.onPause();
 
-        // If Main Activity is paused, then interrupt Main List Loading Background Thread
-        if (mainListLoaderThread!=null) {
-
-            mainListLoaderThread.cancel();
-        }
+        // If Main Activity is paused, then interrupt Main List Loading (List is loaded again on resume)
+        mainListRefreshScheduler.cancel();
     }
 
     @Override
@@ -366,227 +374,135 @@ public class MainActivity extends BaseActivity {
 
         super.onDestroy();
 
-        // If Main Activity is closed, then interrupt Main List Loading Background Thread
-        if (mainListLoaderThread!=null) {
-
-            mainListLoaderThread.cancel();
-        }
+        // If Main Activity is closed, then interrupt Main List Loading
+        mainListRefreshScheduler.cancel();
 
         // Close Note Database
         //closeNoteDB();
     }
 
-    // Method to Populate Note List View
+    // Method to Populate Note List View (Merged with a load already requested, & started once the running load finishes)
     void refreshDisplay() {
 
-        // If a previous Main List Background Loading thread has not finished, then interrupt before starting new one
-        if (mainListLoaderThread!=null) {
-
-            mainListLoaderThread.cancel();
-        }
-
-        // Start New Main List Loading Background thread
-        listContext = this;
-        mainListLoaderThread = new MainListLoaderThread();
-        mainListLoaderThread.start();
+        mainListRefreshScheduler.requestAll();
     }
 
-    // Main List Loading Thread for populating main note list from database
-    private class MainListLoaderThread extends Thread {
-
-        private int refreshInProgressPause = 50;
+    // Patches Main List with notes changed in database (Other screens' changes are loaded on resume)
+    @Override
+    void onNotesChanged(Map<Long, Integer> changes) {
 
-        public void run() {
+        mainListRefreshScheduler.requestChanged(changes.keySet());
+    }
 
-            // If another main list loading thread is in progress, then wait until it finished
-            while (displayRefreshInProgress) {
+    // Main List Loader for populating main note list from database, either every note or only changed notes (Run by Main List Refresh Scheduler on its background thread)
+    private static class MainListLoader implements RefreshScheduler.Loader {
 
-                // Delay
-                try {
+        public void load(Set<Long> changedRowIds) {
 
-                    Thread.sleep(refreshInProgressPause);
-                }
-                catch (Exception e) {
+            // Changed notes are patched into a complete list, otherwise (or if a load was interrupted) every note is loaded
+            if ( (changedRowIds != null) && lastPublishedPage.isComplete() ) {
 
-                    //Log.d("A", "Exception to Thread Sleep Request");
-                }
+                loadChangedNotes(changedRowIds);
             }
+            else {
 
-            if (!isInterrupted()) {
-
-                displayRefreshInProgress = true;
-
-                // Get Note Info from Database
-                // ***** This is the only place in the application where we do not wait until another thread has finsihed using the database in order to access it *****
-                // ***** If another thread is using the database, it will trigger a new main list refresh when finished ****
-                dbInUse = true;
-                Cursor noteListCursor = myNoteDb.getAllNotesForMainList();
-                dbInUse = false;
-
-                int numOfRecords = noteListCursor.getCount();
+                loadAllNotes();
+            }
+        }
 
-                // Construct Main List Initialize UI Handler Message
-                Bundle initialBundle = new Bundle();
-                initialBundle.putInt("numofrecords", numOfRecords);
-                Message initialMessage = new Message();
-                initialMessage.setData(initialBundle);
-                initialMessage.what = INITIALIZE_LIST;
+        private void loadAllNotes() {
 
-                // Notify Main List Handler to Initialize List
-                mainListHandler.sendMessage(initialMessage);
+            // Get Note Info from Database
+            // Read runs on its own connection (Write-Ahead Logging), so it isn't blocked by a queued write in progress.  A finished write triggers a new main list refresh.
+            Cursor noteListCursor = myNoteDb.getAllNotesForMainList();
 
-                // If records are present, then sort and display note list, otherwise display "No Notes" Message
-                if (numOfRecords > 0) {
+            int numOfRecords = noteListCursor.getCount();
 
-                    long[] dateOrder = new long[numOfRecords];
-                    int[] rowIdOrder = new int[numOfRecords];
+            // Rows are read into one set of arrays, published as a first screenful (only into an empty list), then all rows (already in date order)
+            // A list already shown gets only the complete page, so rows beyond the first screenful aren't removed & reinserted
+            boolean publishFirstPage = (lastPublishedPage.size() == 0);
+            NoteListSnapshot.Builder rows = new NoteListSnapshot.Builder(numOfRecords);
 
-                    // Get rowId's & corresponding dates
-                    if (noteListCursor.moveToFirst()) {
+            if (noteListCursor.moveToFirst()) {
 
-                        int i = 0;
+                do {
 
-                        do {
-                            dateOrder[i] = noteListCursor.getLong(NoteDBAdapter.COL_DATE);
-                            rowIdOrder[i] = noteListCursor.getInt(NoteDBAdapter.COL_ROWID);
+                    rows.addRow(noteListCursor);
 
-                            i++;
-                        }
-                        while (noteListCursor.moveToNext());
+                    // Notify Main List UI Handler to display first screenful while the rest are read
+                    if ( publishFirstPage & (rows.size() == NoteListSnapshot.FIRST_PAGE_SIZE) & (rows.size() < numOfRecords) ) {
 
-                        noteListCursor.close();
+                        publishPage(rows.build());
                     }
+                }
+                while (!Thread.currentThread().isInterrupted() && noteListCursor.moveToNext());
+            }
 
-                    if (!isInterrupted()) {
-
-                        // Sort rowId's by date with larger date numbers (more recent) first
-                        boolean swapped;
-
-                        do {
-
-                            swapped = false;
-
-                            for (int i = 0; i < (numOfRecords - 1); i++) {
-
-                                if (dateOrder[i] < dateOrder[i + 1]) {
-
-                                    long dateHolder = dateOrder[i];
-                                    dateOrder[i] = dateOrder[i + 1];
-                                    dateOrder[i + 1] = dateHolder;
-
-                                    int rowIdHolder = rowIdOrder[i];
-                                    rowIdOrder[i] = rowIdOrder[i + 1];
-                                    rowIdOrder[i + 1] = rowIdHolder;
+            noteListCursor.close();
 
-                                    swapped = true;
-                                }
-                            }
-                        }
-                        while (swapped);
+            // Notify Main List UI Handler to display every note (or "No Notes.")
+            if (rows.size() == numOfRecords) {
 
-                        // Iterate thru notes and notify main list UI Handler to update list
-                        dbInUse = true;
+                publishPage(rows.build());
+            }
+        }
 
-                        for (int i = 0; i < numOfRecords; i++) {
+        // Re-reads only changed notes & patches them into last published list (Deleted notes aren't returned, so are removed)
+        private void loadChangedNotes(Set<Long> changedRowIds) {
 
-                            if (!isInterrupted()) {
+            long[] rowIds = new long[changedRowIds.size()];
+            int i = 0;
 
-                                // Get correct note based on date sorted order
-                                Cursor singleNoteCursor = myNoteDb.getRow(rowIdOrder[i]);
+            for (long rowId : changedRowIds) {
 
-                                if (singleNoteCursor.moveToFirst()) {
+                rowIds[i++] = rowId;
+            }
 
-                                    String savedPasscodeHash = singleNoteCursor.getString(NoteDBAdapter.COL_PASSCODE_HASH);
-                                    String encryptedMarkerImageUri = "";
+            Cursor changedCursor = myNoteDb.getNotesForMainList(rowIds);
+            NoteListSnapshot.Builder changedRows = new NoteListSnapshot.Builder(changedCursor.getCount());
 
-                                    // If note is encrytped, then add encrypted marker image URI
-                                    if (!savedPasscodeHash.equals("")) {
+            while (changedCursor.moveToNext()) {
 
-                                        Uri imageLockUri = Uri.parse("android.resource://net.leonardlabs.locker/drawable/lock");
-                                        encryptedMarkerImageUri = imageLockUri.toString();
-                                    }
+                changedRows.addRow(changedCursor);
+            }
 
-                                    // Format Date
-                                    Date dateObject = new Date(dateOrder[i]);
-                                    String date = new SimpleDateFormat("M/d/yy").format(dateObject);
-                                    String time = new SimpleDateFormat("h:mm a").format(dateObject);
-
-                                    // Construct Main List UI Handler Message
-                                    Bundle bundle = new Bundle();
-                                    bundle.putLong("rowid", rowIdOrder[i]);
-                                    bundle.putString("name", singleNoteCursor.getString(NoteDBAdapter.COL_NAME));
-                                    bundle.putString("date", date);
-                                    bundle.putString("time", time);
-                                    bundle.putString("marker", encryptedMarkerImageUri);
-                                    Message message = new Message();
-                                    message.setData(bundle);
-                                    message.what = UPDATE_LIST;
-
-                                    // Notify Main List UI Handler to update list with supplied note
-                                    if (!isInterrupted()) {
-
-                                        mainListHandler.sendMessage(message);
-                                    }
+            changedCursor.close();
 
-                                    singleNoteCursor.close();
-                                }
-                            }
-                        }
+            publishPage(lastPublishedPage.patch(changedRowIds, changedRows.build()));
+        }
 
-                        dbInUse = false;
-                    }
-                }
-                else {
+        // Diffs page from last published page & notifies Main List UI Handler
+        private void publishPage(NoteListSnapshot page) {
 
-                    // No Notes Found.  Notify Main List UI Handler to display "No Notes."
+            if (!Thread.currentThread().isInterrupted()) {
 
-                    mainListHandler.sendEmptyMessage(NO_NOTES);
-                }
+                Message message = new Message();
+                message.what = UPDATE_LIST;
+                message.obj = new NoteListAdapter.Update(lastPublishedPage, page);
+                mainListHandler.sendMessage(message);
 
-                displayRefreshInProgress = false;
+                lastPublishedPage = page;
             }
         }
-
-        // Package accessible thread interrupt method
-        void cancel() {
-
-            interrupt();
-        }
     }
 
-    // Handle Note List Long-Click Listener Menu Actions
-    private void noteListMenuAction(final int itemId, final long rowId) {
+    // Handle Note List Long-Click Listener Menu Actions (Encrypted flag is the one the menu was chosen for)
+    private void noteListMenuAction(final int itemId, final long rowId, boolean encrypted) {
 
-        // Declaration of Passcode Checking Background Thread for actions on encrypted notes
-        class CheckPasscodeThread extends Thread {
+        // Declaration of Passcode Checking Database Operation for actions on encrypted notes
+        class CheckPasscodeTask implements Runnable {
 
             private char[] testPasscode;
 
-            CheckPasscodeThread(char[] inputPasscode) {
+            CheckPasscodeTask(char[] inputPasscode) {
 
                 testPasscode = inputPasscode;
             }
 
             public void run() {
 
-                // If Database is still in use by another thread, then wait
-                while (dbInUse) {
-
-                    // Delay
-                    try {
-
-                        Thread.sleep(dbinUsePause);
-                    }
-                    catch (Exception e) {
-
-                        //Log.d("A", "Exception to Thread Sleep Request");
-                    }
-                }
-
                 // Check Entered Passcode against saved database passcode
-                dbInUse = true;
                 int checkPasscodeResult = myNoteDb.checkPasscode(rowId, testPasscode);
-                dbInUse = false;
 
                 // If passcode is incorrect, don't do anything else
                 if (checkPasscodeResult == 0) {
@@ -596,9 +512,7 @@ public class MainActivity extends BaseActivity {
                     databaseUpdateHandler.sendEmptyMessage(INCORRECT_PASSCODE);
 
                     // Check if Note is Locked
-                    dbInUse = true;
                     boolean isNoteLocked = myNoteDb.isNoteLocked(rowId);
-                    dbInUse = false;
 
                     if (isNoteLocked) {
 
@@ -619,33 +533,17 @@ public class MainActivity extends BaseActivity {
 
                             // Delete Note
 
-                            // Start seperate thread to Delete Note in Database
-                            new Thread(new Runnable() {
+                            // Queue Database Operation to Delete Note
+                            DatabaseExecutor.submit(new Runnable() {
 
                                 public void run() {
 
-                                    // If Database is still in use by another thread, then wait
-                                    while (dbInUse) {
-
-                                        // Delay
-                                        try {
-
-                                            Thread.sleep(dbinUsePause);
-                                        }
-                                        catch (Exception e) {
-
-                                            //Log.d("A", "Exception to Thread Sleep Request");
-                                        }
-                                    }
-
                                     // Delete Note in Database & Notify Database Update Handler
-                                    dbInUse = true;
                                     myNoteDb.deleteRow(rowId);
-                                    dbInUse = false;
 
                                     databaseUpdateHandler.sendEmptyMessage(NOTE_DELETED);
                                 }
-                            }).start();
+                            });
 
                             break;
 
@@ -689,12 +587,7 @@ public class MainActivity extends BaseActivity {
             }
         }
 
-        // Check if a passcode hash is saved for note (i.e. note is encrypted)
-        dbInUse = true;
-        String passcodeHash = myNoteDb.getPasscodeHash(rowId);
-        dbInUse = false;
-
-        if (!passcodeHash.equals("")) {
+        if (encrypted) {
 
             // A Passcode is saved => Note is encrypted
             // Initiate Prompt for passcode entry
@@ -741,12 +634,11 @@ public class MainActivity extends BaseActivity {
                                     // Overwrite Passcode EditText Field for security
                                     passcodePromptEditTextPasscode.setText("");
 
-                                    // If passcode was entered & less than max size, then start background thread to check passcode, & direct further action
+                                    // If passcode was entered & less than max size, then start database operation to check passcode, & direct further action
                                     if ((passcodeLength <= maxPasscodeSize) & (passcodeLength > 0)) {
 
-                                       // Start Passcode Checking Background Thread
-                                       CheckPasscodeThread checkPasscodeThread = new CheckPasscodeThread(passcode);
-                                       checkPasscodeThread.start();
+                                       // Queue Passcode Checking Database Operation
+                                       DatabaseExecutor.submit(new CheckPasscodeTask(passcode));
                                     }
                                     else {
 
@@ -812,34 +704,18 @@ public class MainActivity extends BaseActivity {
 
                                         public void onClick(DialogInterface dialog,int id) {
 
-                                            // Start seperate thread to Delete Note in Database
-                                            new Thread(new Runnable() {
+                                            // Queue Database Operation to Delete Note
+                                            DatabaseExecutor.submit(new Runnable() {
 
                                                 public void run() {
 
-                                                    // If Database is still in use by another thread, then wait
-                                                    while (dbInUse) {
-
-                                                        // Delay
-                                                        try {
-
-                                                            Thread.sleep(dbinUsePause);
-                                                        }
-                                                        catch (Exception e) {
-
-                                                            //Log.d("A", "Exception to Thread Sleep Request");
-                                                        }
-                                                    }
-
                                                     // Delete Note in Database & Notify Database Update Handler
-                                                    dbInUse = true;
                                                     myNoteDb.deleteRow(rowId);
-                                                    dbInUse = false;
 
                                                     databaseUpdateHandler.sendEmptyMessage(NOTE_DELETED);
 
                                                 }
-                                            }).start();
+                                            });
                                         }
                                     })
                             .setNegativeButton("Cancel",
@@ -907,7 +783,7 @@ public class MainActivity extends BaseActivity {
         int id = item.getItemId();
 
         // If Database is in use, do nothing.
-        if (!dbInUse) {
+        if (!DatabaseExecutor.isBusy()) {
 
             if (id == R.id.action_delete_all) {
 
@@ -929,33 +805,18 @@ public class MainActivity extends BaseActivity {
 
                                     public void onClick(DialogInterface dialog, int id) {
 
-                                        // Start seperate thread to Delete All Unencrypted Notes in database
-                                        new Thread(new Runnable() {
+                                        // Queue Database Operation to Delete All Unencrypted Notes
+                                        DatabaseExecutor.submit(new Runnable() {
 
                                             public void run() {
 
-                                                // If Database is still in use by another thread, then wait
-                                                while (dbInUse) {
-
-                                                    // Delay
-                                                    try {
-
-                                                        Thread.sleep(dbinUsePause);
-                                                    }
-                                                    catch (Exception e) {
-
-                                                        //Log.d("A", "Exception to Thread Sleep Request");
-                                                    }
-                                                }
-
-                                                // Delete All Unencrypted Notes in database & notify Database Update Handler
-                                                dbInUse = true;
-                                                myNoteDb.deleteAllUnencrypted();
-                                                dbInUse = false;
-
-                                                databaseUpdateHandler.sendEmptyMessage(ALL_UNENCRYPTED_NOTES_DELETED);
+                                                // Delete All Unencrypted Notes in database & notify Database Update Handler with number deleted
+                                                Message message = new Message();
+                                                message.what = ALL_UNENCRYPTED_NOTES_DELETED;
+                                                message.arg1 = myNoteDb.deleteAllUnencrypted();
+                                                databaseUpdateHandler.sendMessage(message);
                                             }
-                                        }).start();
+                                        });
                                     }
                                 })
                         .setNegativeButton("Cancel",
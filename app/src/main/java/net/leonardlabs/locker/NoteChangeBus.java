@@ -0,0 +1,119 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Typed Note Change Events, posted by NoteDBAdapter after each committed write & delivered on the UI thread.
+// Changes posted before the UI thread next runs are coalesced into one delivery, with one change per note.
+final class NoteChangeBus {
+
+    // Kinds of Change, in order of how much of a note's row must be re-read (Coalesced changes keep the greatest)
+    static final int RENAMED = 0;
+    static final int UPDATED = 1;                   // Body, Date or Passcode changed
+    static final int INSERTED = 2;
+    static final int DELETED = 3;
+
+    interface Listener {
+
+        // Note Row Id to Kind of Change (Unmodifiable)
+        void onNotesChanged(Map<Long, Integer> changes);
+    }
+
+    private static final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static Map<Long, Integer> pendingChanges = new LinkedHashMap<>();
+
+    private static final Runnable deliverChanges = new Runnable() {
+
+        public void run() {
+
+            Map<Long, Integer> changes;
+
+            synchronized (NoteChangeBus.class) {
+
+                changes = Collections.unmodifiableMap(pendingChanges);
+                pendingChanges = new LinkedHashMap<>();
+            }
+
+            if (!changes.isEmpty()) {
+
+                for (Listener listener : listeners) {
+
+                    listener.onNotesChanged(changes);
+                }
+            }
+        }
+    };
+
+    private NoteChangeBus() {
+    }
+
+    static void register(Listener listener) {
+
+        listeners.add(listener);
+    }
+
+    static void unregister(Listener listener) {
+
+        listeners.remove(listener);
+    }
+
+    // Queues change for delivery (Called on database thread once the write is committed)
+    static synchronized void post(long rowId, int kind) {
+
+        boolean deliveryScheduled = !pendingChanges.isEmpty();
+        Integer previousKind = pendingChanges.get(rowId);
+
+        if (previousKind == null) {
+
+            pendingChanges.put(rowId, kind);
+        }
+        else if ( (previousKind == INSERTED) & (kind == DELETED) ) {
+
+            // Note was inserted & deleted before any screen saw it
+            pendingChanges.remove(rowId);
+        }
+        else {
+
+            pendingChanges.put(rowId, Math.max(previousKind, kind));
+        }
+
+        if (!deliveryScheduled) {
+
+            uiHandler.post(deliverChanges);
+        }
+    }
+}
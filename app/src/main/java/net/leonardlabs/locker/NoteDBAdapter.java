@@ -32,49 +32,55 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.os.Build;
 import android.util.Base64;
 import android.util.Log;
 
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.Mac;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
 class NoteDBAdapter {
 
     // DB info
     private static final String DATABASE_NAME = "NoteDb";
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 9;
     private static final String DATABASE_NOTE_TABLE = "noteTable";
-
-    // Encryption Parameters
-    private static String passcodeHashAlgorithm;
-    private static String passcodeKeyExtensionAlgorithm;
-    private static String encryptionType;
-    private static String keyType;
-    private static int keyLength;                                           // Key Length in Bits
-    private static int iterationCount;                                     // Iterations for Passcode Hashing & Passcode Key Extension Algorithms
-
-    // Encryption Scheme Codes
-    private static final int BELOW_API_23 = 0;
-    private static final int API_23_TO_25 = 1;
-    private static final int API_26 = 2;
-    private static int currentScheme;
-
-    // DB Fields
+    private static final String DATABASE_BODY_TABLE = "bodyTable";
+    private static final String DATABASE_CHUNK_TABLE = "chunkTable";
+    private static final String DATABASE_V3_NOTE_TABLE = "noteTableV3";
+    private static final String DATABASE_V4_NOTE_TABLE = "noteTableV4";
+    private static final String DATABASE_NOTE_DATE_INDEX = "noteTableDateIndex";
+    private static final String DATABASE_NOTE_NAME_INDEX = "noteTableNameIndex";
+    private static final String DATABASE_LOCKOUT_TABLE = "lockoutTable";
+
+    // Single Pass KDF Expansion (Verifier & Key are expanded from master key with HMAC, so only one PBKDF2 block is computed)
+    private static final String KDF_EXPANSION_ALGORITHM = "HmacSHA256";
+    private static final byte[] VERIFIER_EXPANSION_INFO = new byte[] {'v', 'e', 'r', 'i', 'f', 'i', 'e', 'r', 1};
+    private static final byte[] KEY_EXPANSION_INFO = new byte[] {'k', 'e', 'y', 1};
+    private static final int VERIFIER_LENGTH = 32;                         // Verifier & Key Length in Bytes
+
+    // DB Fields (Note Table holds metadata only, Body Table or Chunk Table holds Note Body keyed by same rowId)
     static final String KEY_ROWID = "_id";
     static final int COL_ROWID = 0;
 
@@ -87,38 +93,252 @@ class NoteDBAdapter {
     private static final String KEY_PASSCODE_HASH = "passcodehash";
     private static final String KEY_PASSCODE_SALT = "passcodesalt";
     private static final String KEY_BAD_PASSCODE = "badpasscode";
+    private static final String KEY_FORMAT = "format";
+    private static final String KEY_WRAPPED_KEY = "wrappedkey";
+    private static final String KEY_ITERATIONS = "iterations";
+    private static final String KEY_CHUNK = "chunk";
 
     static final int COL_NAME = 1;
     static final int COL_DATE = 2;
-    private static final int COL_BODY = 3;
-    private static final int COL_SCHEME = 4;
-    private static final int COL_SALT = 5;
-    private static final int COL_IV = 6;
-    static final int COL_PASSCODE_HASH = 7;
-    private static final int COL_PASSCODE_SALT = 8;
-    private static final int COL_BAD_PASSCODE = 9;
+    private static final int COL_SCHEME = 3;
+    private static final int COL_SALT = 4;
+    private static final int COL_IV = 5;
+    static final int COL_PASSCODE_HASH = 6;
+    private static final int COL_PASSCODE_SALT = 7;
+    private static final int COL_FORMAT = 8;
+    private static final int COL_WRAPPED_KEY = 9;
+    private static final int COL_ITERATIONS = 10;
+
+    // Body Table Fields
+    private static final int COL_BODY = 0;
+
+    // Storage Format Codes (Base-64 & single BLOB rows are converted to chunks the next time they are saved)
+    private static final int FORMAT_BASE64 = 0;
+    private static final int FORMAT_BLOB = 1;
+    private static final int FORMAT_CHUNKED = 2;                           // Metadata is BLOBs, Note Body is in Chunk Table
+    private static final int FORMAT_DEFLATED = 3;                          // Chunked, Note Body was deflated before chunking (& encryption)
+
+    // Lockout Table Fields (Row only exists while a note has bad passcode entries, keyed by note rowId)
+    private static final int COL_LOCKOUT_BAD_PASSCODE = 0;
+
+    // Main List Fields (Encrypted Flag is computed by query, 1 if an IV is saved, 0 if not)
+    static final String KEY_ENCRYPTED = "encrypted";
+    private static final String ENCRYPTED_SQL = "(length(" + KEY_IV + ") > 0)";
+    static final int COL_ENCRYPTED = 3;
+
+    private static final String[] ALL_NOTETABLE_KEYS = new String[] {KEY_ROWID, KEY_NAME, KEY_DATE, KEY_SCHEME, KEY_SALT, KEY_IV, KEY_PASSCODE_HASH, KEY_PASSCODE_SALT, KEY_FORMAT, KEY_WRAPPED_KEY, KEY_ITERATIONS};
+
+    private static final String[] BODY_KEYS = new String[] {KEY_BODY};
+    private static final String[] CHUNK_SIZE_KEYS = new String[] {"count(*)", "sum(length(" + KEY_BODY + "))"};
+    private static final String[] ROWID_KEYS = new String[] {KEY_ROWID};
+    private static final String[] LOCKOUT_KEYS = new String[] {KEY_BAD_PASSCODE};
+    private static final String[] MAIN_LIST_KEYS = new String[] {KEY_ROWID, KEY_NAME, KEY_DATE, ENCRYPTED_SQL + " AS " + KEY_ENCRYPTED};
+
+    //DB Table Creation Strings (Body, Salts, IV, Passcode Hash & Wrapped Data Key are raw bytes, Iterations of 0 means scheme default)
+    private static final String DATABASE_CREATE_NOTE_TABLE_SQL =
+            "create table " + DATABASE_NOTE_TABLE
+                    + " (" + KEY_ROWID + " integer primary key autoincrement, "
+
+                    + KEY_NAME + " string not null, "
+                    + KEY_DATE + " integer not null, "
+                    + KEY_SCHEME + " integer not null, "
+                    + KEY_SALT + " blob not null, "
+                    + KEY_IV + " blob not null, "
+                    + KEY_PASSCODE_HASH + " blob not null, "
+                    + KEY_PASSCODE_SALT + " blob not null, "
+                    + KEY_FORMAT + " integer not null default " + FORMAT_BASE64 + ", "
+                    + KEY_WRAPPED_KEY + " blob not null default x'', "
+                    + KEY_ITERATIONS + " integer not null default 0 "
+                    + ");";
 
-    private static final String[] ALL_NOTETABLE_KEYS = new String[] {KEY_ROWID, KEY_NAME, KEY_DATE, KEY_BODY, KEY_SCHEME, KEY_SALT, KEY_IV, KEY_PASSCODE_HASH, KEY_PASSCODE_SALT, KEY_BAD_PASSCODE};
+    private static final String DATABASE_CREATE_BODY_TABLE_SQL =
+            "create table if not exists " + DATABASE_BODY_TABLE
+                    + " (" + KEY_ROWID + " integer primary key, "
 
-    private static final String[] NAME_KEYS = new String[] {KEY_ROWID, KEY_NAME};
-    private static final String[] MAIN_LIST_KEYS = new String[] {KEY_ROWID, KEY_NAME, KEY_DATE, KEY_PASSCODE_HASH};
+                    + KEY_BODY + " blob not null "
+                    + ");";
 
-    //DB Table Creation Strings
-    private static final String DATABASE_CREATE_NOTE_TABLE_SQL =
+    // Long Note Bodies are split into chunks (each encrypted on its own), so no row outgrows a Cursor Window
+    private static final String DATABASE_CREATE_CHUNK_TABLE_SQL =
+            "create table if not exists " + DATABASE_CHUNK_TABLE
+                    + " (" + KEY_ROWID + " integer not null, "
+
+                    + KEY_CHUNK + " integer not null, "
+                    + KEY_BODY + " blob not null, "
+                    + "primary key (" + KEY_ROWID + ", " + KEY_CHUNK + ")"
+                    + ");";
+
+    // Index for returning Main List in date order without sorting
+    private static final String DATABASE_CREATE_NOTE_DATE_INDEX_SQL =
+            "create index if not exists " + DATABASE_NOTE_DATE_INDEX
+                    + " on " + DATABASE_NOTE_TABLE + " (" + KEY_DATE + ");";
+
+    // Unique Index, so name checks are one index lookup & no two notes can share a name
+    private static final String DATABASE_CREATE_NOTE_NAME_INDEX_SQL =
+            "create unique index if not exists " + DATABASE_NOTE_NAME_INDEX
+                    + " on " + DATABASE_NOTE_TABLE + " (" + KEY_NAME + ");";
+
+    // Bad Passcode Counts are kept apart from notes, so failed unlocks don't rewrite note rows
+    private static final String DATABASE_CREATE_LOCKOUT_TABLE_SQL =
+            "create table if not exists " + DATABASE_LOCKOUT_TABLE
+                    + " (" + KEY_ROWID + " integer primary key, "
+
+                    + KEY_BAD_PASSCODE + " integer not null "
+                    + ");";
+
+    private static final String DATABASE_MIGRATE_BAD_PASSCODES_SQL =
+            "insert into " + DATABASE_LOCKOUT_TABLE + " (" + KEY_ROWID + ", " + KEY_BAD_PASSCODE + ")"
+                    + " select " + KEY_ROWID + ", " + KEY_BAD_PASSCODE + " from " + DATABASE_NOTE_TABLE
+                    + " where " + KEY_BAD_PASSCODE + " != 0;";
+
+    // Version 3 Note Table is rebuilt with BLOB columns (Saved Base-64 values are copied as is & flagged, unused Bad Passcode column is dropped)
+    private static final String DATABASE_CREATE_V4_NOTE_TABLE_SQL =
             "create table " + DATABASE_NOTE_TABLE
                     + " (" + KEY_ROWID + " integer primary key autoincrement, "
 
                     + KEY_NAME + " string not null, "
                     + KEY_DATE + " integer not null, "
-                    + KEY_BODY + " string not null, "
+                    + KEY_BODY + " blob not null, "
                     + KEY_SCHEME + " integer not null, "
-                    + KEY_SALT + " string not null, "
-                    + KEY_IV + " string not null, "
-                    + KEY_PASSCODE_HASH + " string not null, "
-                    + KEY_PASSCODE_SALT + " string not null, "
-                    + KEY_BAD_PASSCODE + " integer not null "
+                    + KEY_SALT + " blob not null, "
+                    + KEY_IV + " blob not null, "
+                    + KEY_PASSCODE_HASH + " blob not null, "
+                    + KEY_PASSCODE_SALT + " blob not null, "
+                    + KEY_FORMAT + " integer not null default " + FORMAT_BASE64 + " "
+                    + ");";
+
+    private static final String NOTE_TABLE_COPY_COLUMNS =
+            KEY_ROWID + ", " + KEY_NAME + ", " + KEY_DATE + ", " + KEY_BODY + ", " + KEY_SCHEME + ", "
+                    + KEY_SALT + ", " + KEY_IV + ", " + KEY_PASSCODE_HASH + ", " + KEY_PASSCODE_SALT;
+
+    private static final String DATABASE_RENAME_V3_NOTE_TABLE_SQL =
+            "alter table " + DATABASE_NOTE_TABLE + " rename to " + DATABASE_V3_NOTE_TABLE + ";";
+
+    private static final String DATABASE_COPY_V3_NOTE_TABLE_SQL =
+            "insert into " + DATABASE_NOTE_TABLE + " (" + NOTE_TABLE_COPY_COLUMNS + ", " + KEY_FORMAT + ")"
+                    + " select " + NOTE_TABLE_COPY_COLUMNS + ", " + FORMAT_BASE64 + " from " + DATABASE_V3_NOTE_TABLE + ";";
+
+    // Row Id Sequence is carried over, so Row Ids of deleted notes aren't reused
+    private static final String DATABASE_CLEAR_NOTE_SEQUENCE_SQL =
+            "delete from sqlite_sequence where name = '" + DATABASE_NOTE_TABLE + "';";
+
+    private static final String DATABASE_COPY_V3_NOTE_SEQUENCE_SQL =
+            "insert into sqlite_sequence (name, seq)"
+                    + " select '" + DATABASE_NOTE_TABLE + "', seq from sqlite_sequence where name = '" + DATABASE_V3_NOTE_TABLE + "';";
+
+    private static final String DATABASE_DROP_V3_NOTE_TABLE_SQL =
+            "drop table " + DATABASE_V3_NOTE_TABLE + ";";
+
+    // Version 4 Note Bodies are moved to Body Table & Note Table is rebuilt without Body column
+    private static final String METADATA_COPY_COLUMNS =
+            KEY_ROWID + ", " + KEY_NAME + ", " + KEY_DATE + ", " + KEY_SCHEME + ", " + KEY_SALT + ", "
+                    + KEY_IV + ", " + KEY_PASSCODE_HASH + ", " + KEY_PASSCODE_SALT + ", " + KEY_FORMAT;
+
+    private static final String DATABASE_MIGRATE_BODIES_SQL =
+            "insert into " + DATABASE_BODY_TABLE + " (" + KEY_ROWID + ", " + KEY_BODY + ")"
+                    + " select " + KEY_ROWID + ", " + KEY_BODY + " from " + DATABASE_NOTE_TABLE + ";";
+
+    private static final String DATABASE_RENAME_V4_NOTE_TABLE_SQL =
+            "alter table " + DATABASE_NOTE_TABLE + " rename to " + DATABASE_V4_NOTE_TABLE + ";";
+
+    private static final String DATABASE_COPY_V4_NOTE_TABLE_SQL =
+            "insert into " + DATABASE_NOTE_TABLE + " (" + METADATA_COPY_COLUMNS + ")"
+                    + " select " + METADATA_COPY_COLUMNS + " from " + DATABASE_V4_NOTE_TABLE + ";";
+
+    private static final String DATABASE_COPY_V4_NOTE_SEQUENCE_SQL =
+            "insert into sqlite_sequence (name, seq)"
+                    + " select '" + DATABASE_NOTE_TABLE + "', seq from sqlite_sequence where name = '" + DATABASE_V4_NOTE_TABLE + "';";
+
+    private static final String DATABASE_DROP_V4_NOTE_TABLE_SQL =
+            "drop table " + DATABASE_V4_NOTE_TABLE + ";";
+
+    private static final String DATABASE_CREATE_V5_NOTE_TABLE_SQL =
+            "create table " + DATABASE_NOTE_TABLE
+                    + " (" + KEY_ROWID + " integer primary key autoincrement, "
+
+                    + KEY_NAME + " string not null, "
+                    + KEY_DATE + " integer not null, "
+                    + KEY_SCHEME + " integer not null, "
+                    + KEY_SALT + " blob not null, "
+                    + KEY_IV + " blob not null, "
+                    + KEY_PASSCODE_HASH + " blob not null, "
+                    + KEY_PASSCODE_SALT + " blob not null, "
+                    + KEY_FORMAT + " integer not null default " + FORMAT_BASE64 + " "
                     + ");";
 
+    // Version 5 Note Table gets Wrapped Data Key column (empty until a note is saved with an envelope scheme)
+    private static final String DATABASE_ADD_WRAPPED_KEY_COLUMN_SQL =
+            "alter table " + DATABASE_NOTE_TABLE + " add column " + KEY_WRAPPED_KEY + " blob not null default x'';";
+
+    // Version 6 Note Table gets Key Extension Iteration Count column (0 until a note is saved after calibration)
+    private static final String DATABASE_ADD_ITERATIONS_COLUMN_SQL =
+            "alter table " + DATABASE_NOTE_TABLE + " add column " + KEY_ITERATIONS + " integer not null default 0;";
+
+    // Version 9 Notes sharing a name (only possible before the Name Index) keep the oldest note's name, others get their Row Id added
+    // A new name can itself be taken (e.g. "note (6)" already exists), so renaming is repeated until no duplicates are counted.  Names grow each pass, so it ends.
+    private static final String DATABASE_DUPLICATE_NAMES_WHERE =
+            " where " + KEY_ROWID + " not in (select min(" + KEY_ROWID + ") from " + DATABASE_NOTE_TABLE + " group by " + KEY_NAME + ")";
+
+    private static final String DATABASE_COUNT_DUPLICATE_NAMES_SQL =
+            "select count(*) from " + DATABASE_NOTE_TABLE + DATABASE_DUPLICATE_NAMES_WHERE + ";";
+
+    private static final String DATABASE_RENAME_DUPLICATE_NAMES_SQL =
+            "update " + DATABASE_NOTE_TABLE + " set " + KEY_NAME + " = " + KEY_NAME + " || ' (' || " + KEY_ROWID + " || ')'"
+                    + DATABASE_DUPLICATE_NAMES_WHERE + ";";
+
+    // Schema Migrations in version order (Last step is DATABASE_VERSION)
+    static final DatabaseMigration[] MIGRATIONS = new DatabaseMigration[] {
+
+            DatabaseMigration.of(2, "Date Index for Main List",
+                    DATABASE_CREATE_NOTE_DATE_INDEX_SQL),
+
+            // Bad Passcode Counts are carried over from Note Table
+            DatabaseMigration.of(3, "Lockout Table",
+                    DATABASE_CREATE_LOCKOUT_TABLE_SQL,
+                    DATABASE_MIGRATE_BAD_PASSCODES_SQL),
+
+            // Date Index is dropped with old table & recreated
+            DatabaseMigration.of(4, "BLOB Columns",
+                    DATABASE_RENAME_V3_NOTE_TABLE_SQL,
+                    DATABASE_CREATE_V4_NOTE_TABLE_SQL,
+                    DATABASE_COPY_V3_NOTE_TABLE_SQL,
+                    DATABASE_CLEAR_NOTE_SEQUENCE_SQL,
+                    DATABASE_COPY_V3_NOTE_SEQUENCE_SQL,
+                    DATABASE_DROP_V3_NOTE_TABLE_SQL,
+                    DATABASE_CREATE_NOTE_DATE_INDEX_SQL),
+
+            // Note Table is rebuilt as metadata only, Date Index is recreated
+            DatabaseMigration.of(5, "Body Table",
+                    DATABASE_CREATE_BODY_TABLE_SQL,
+                    DATABASE_MIGRATE_BODIES_SQL,
+                    DATABASE_RENAME_V4_NOTE_TABLE_SQL,
+                    DATABASE_CREATE_V5_NOTE_TABLE_SQL,
+                    DATABASE_COPY_V4_NOTE_TABLE_SQL,
+                    DATABASE_CLEAR_NOTE_SEQUENCE_SQL,
+                    DATABASE_COPY_V4_NOTE_SEQUENCE_SQL,
+                    DATABASE_DROP_V4_NOTE_TABLE_SQL,
+                    DATABASE_CREATE_NOTE_DATE_INDEX_SQL),
+
+            // Notes move to envelope scheme lazily, when next saved
+            DatabaseMigration.of(6, "Wrapped Data Key Column",
+                    DATABASE_ADD_WRAPPED_KEY_COLUMN_SQL),
+
+            DatabaseMigration.of(7, "Per-Note Key Extension Iteration Count",
+                    DATABASE_ADD_ITERATIONS_COLUMN_SQL),
+
+            // Notes are moved out of Body Table when next saved
+            DatabaseMigration.of(8, "Chunk Table",
+                    DATABASE_CREATE_CHUNK_TABLE_SQL),
+
+            DatabaseMigration.repeating(9, "Unique Name Index",
+                    DATABASE_COUNT_DUPLICATE_NAMES_SQL,
+                    DATABASE_RENAME_DUPLICATE_NAMES_SQL,
+                    DATABASE_CREATE_NOTE_NAME_INDEX_SQL)
+    };
+
+    // Session Cache of Passcode Derived Keys & Hashes
+    private static final DerivedKeyCache keyCache = new DerivedKeyCache(DerivedKeyCache.DEFAULT_TIME_TO_LIVE);
+
     // Context of application which uses DB
     private final Context context;
 
@@ -127,29 +347,19 @@ class NoteDBAdapter {
 
     NoteDBAdapter(Context ctx) {
 
+        this(ctx, DATABASE_NAME);
+    }
+
+    // Database of another name (used by tests, so app's notes are left alone)
+    NoteDBAdapter(Context ctx, String databaseName) {
+
         this.context = ctx;
-        myNoteDBHelper = new NoteDBAdapter.NoteDatabaseHelper(context);
+        myNoteDBHelper = new NoteDBAdapter.NoteDatabaseHelper(context, databaseName);
     }
 
     // Open the database connection.
     NoteDBAdapter open() {
 
-        // Determine API Level of Device & Set Current Encryption Scheme Code for new notes
-        int apiLevel = Build.VERSION.SDK_INT;
-
-        if (apiLevel < 23) {
-
-            currentScheme = BELOW_API_23;
-        }
-        else if (apiLevel >= 23 & apiLevel < 26) {
-
-            currentScheme = API_23_TO_25;
-        }
-        else {
-
-            currentScheme = API_26;
-        }
-
         noteDb = myNoteDBHelper.getWritableDatabase();
         return this;
     }
@@ -159,131 +369,76 @@ class NoteDBAdapter {
         myNoteDBHelper.close();
     }
 
-    // Set Encryption Scheme Parameters Based on Scheme Code
-    private void setSchemeParameters(int schemeCode) {
+    // Wipes all passcode derived keys & hashes cached during session
+    static void clearKeyCache() {
 
-        switch(schemeCode) {
-
-            case BELOW_API_23:
-
-                passcodeHashAlgorithm = "PBKDF2WithHmacSHA1";
-                passcodeKeyExtensionAlgorithm = "PBKDF2WithHmacSHA1";
-                encryptionType = "AES/CBC/PKCS5Padding";
-                keyType = "AES";
-                keyLength = 256;
-                iterationCount = 5000;
-
-                break;
-
-            case API_23_TO_25:
-
-                passcodeHashAlgorithm = "PBKDF2WithHmacSHA1";
-                passcodeKeyExtensionAlgorithm = "PBKDF2WithHmacSHA1";
-                encryptionType = "AES/CBC/PKCS5Padding";
-                keyType = "AES";
-                keyLength = 256;
-                iterationCount = 5000;
-
-                break;
+        keyCache.evictAll();
+    }
 
-            case API_26:
+    // Saves New Note in database & encrypts if necessary, unless another note has the name (returns false if name is in use)
+    boolean insertIfNameFree(String name, byte[] body, char[] passcode) {
 
-                passcodeHashAlgorithm = "PBKDF2withHmacSHA256";
-                passcodeKeyExtensionAlgorithm = "PBKDF2withHmacSHA256";
-                encryptionType = "AES/CBC/PKCS5Padding";
-                keyType = "AES";
-                keyLength = 256;
-                iterationCount = 5000;
+        // Checked first, so a passcode isn't derived for a note that can't be saved
+        if (nameExists(name)) {
 
-                break;
+            return false;
         }
-    }
-
-    // Saves New Note in database & encrypts if necessary
-    void insertNote(String name, byte[] body, char[] passcode) {
 
         long date = System.currentTimeMillis();
-        String salt = "";
-        String iv = "";
-        String encodedPasscodeHash = "";
-        String encodedPasscodeSaltHalf = "";
+        EncryptionScheme scheme = currentScheme();
 
         // Setup Row Data
         ContentValues initialValues = new ContentValues();
+        byte[][] chunks;
         initialValues.put(KEY_NAME, name);
         initialValues.put(KEY_DATE, date);
-        initialValues.put(KEY_SCHEME, currentScheme);
-        initialValues.put(KEY_BAD_PASSCODE, 0);
+        initialValues.put(KEY_SCHEME, scheme.code);
 
-        // If Note is encrypted, then generate new salt & iv & encrypt note body.  Also generate passcode salt & passcode hash.
+        // If Note is encrypted, then generate new salt & iv & encrypt note body.  Passcode verifier is derived along with key (& only saved if scheme isn't authenticated).
         if (passcode!=null) {
 
-            // Set Encryption Scheme Parameters
-            setSchemeParameters(currentScheme);
-
-            // Generate Salt & IV
-            SecureRandom random = new SecureRandom();
-            byte[] saltBytes = new byte[16];
-            random.nextBytes(saltBytes);
-            byte[] ivBytes = generateNewIv();
-            salt = Base64.encodeToString(saltBytes, 0);
-            iv = Base64.encodeToString(ivBytes, 0);
-
-            // Generate Key from Passcode & encrypt note
-            SecretKey key = generateKeyFromPasscode(passcode, salt.getBytes());
-            byte[] encryptedBody = encryptBody(body, key, iv.getBytes());
-            initialValues.put(KEY_BODY, new String(encryptedBody));
+            chunks = encryptWithNewSalt(scheme, -1, passcode, body, initialValues);
+        }
+        else {
 
-            // 1st half (16 bytes) of passcode salt is hardcoded, 2nd half is generated with PRNG and stored in Note DB & added at runtime (salt length should be same as output)
-            byte[] passcodeSalt = new byte[]{'1', 'X', '2', 'h', '^', '+', 'o', 'x', '|', ')', '%', '8', '=', 'r', 'd', 'R', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'};
+            putUnencryptedValues(initialValues);
+            chunks = chunkBody(scheme, body, null, null, initialValues);
+        }
 
-            // Create 2nd half of passcode salt
-            byte[] passcodeSaltHalf = new byte[16];
-            random.nextBytes(passcodeSaltHalf);
+        initialValues.put(KEY_PASSCODE_SALT, new byte[0]);
 
-            // Combine Passcode Salt Halves
-            for (int i = 0; i < 16; i++) {
+        long rowId;
 
-                passcodeSalt[16 + i] = passcodeSaltHalf[i];
-            }
+        // Insert Note Metadata & Body into Database together
+        noteDb.beginTransactionNonExclusive();
 
-            // Hash Passcode for saving
-            try {
+        try {
 
-                // Generate Passcode Hash
-                SecretKeyFactory hashKeyFactory = SecretKeyFactory.getInstance(passcodeHashAlgorithm);
-                KeySpec hashKeySpec = new PBEKeySpec(passcode, passcodeSalt, iterationCount, keyLength);
-                byte[] hashBytes = hashKeyFactory.generateSecret(hashKeySpec).getEncoded();
-                encodedPasscodeHash = Base64.encodeToString(hashBytes, 0);
-            }
-            catch (NoSuchAlgorithmException noSuchAlgorithm) {
+            // Unique Name Index is the backstop, should the name be taken after the check
+            rowId = noteDb.insertWithOnConflict(DATABASE_NOTE_TABLE, null, initialValues, SQLiteDatabase.CONFLICT_IGNORE);
 
-                //Log.d("A", "No Such Alogrithm Exception!  Passcode hash not generated!");
+            if (rowId == -1) {
 
+                return false;
             }
-            catch (InvalidKeySpecException invalidKeySpec) {
 
-                //Log.d("A", "Invalid Key Spec Exception!  Passcode hash not generated!");
-            }
+            writeChunks(rowId, chunks);
 
-            encodedPasscodeSaltHalf = Base64.encodeToString(passcodeSaltHalf, 0);
+            noteDb.setTransactionSuccessful();
         }
-        else {
+        finally {
 
-            initialValues.put(KEY_BODY, new String(body));
+            noteDb.endTransaction();
         }
 
-        initialValues.put(KEY_SALT, salt);
-        initialValues.put(KEY_IV, iv);
-        initialValues.put(KEY_PASSCODE_HASH, encodedPasscodeHash);
-        initialValues.put(KEY_PASSCODE_SALT, encodedPasscodeSaltHalf);
+        NoteChangeBus.post(rowId, NoteChangeBus.INSERTED);
 
-        // Insert Note into Database
-        noteDb.insert(DATABASE_NOTE_TABLE, null, initialValues);
+        return true;
     }
 
-    // Updates Note in database after editing & encrypts if necessary
-    void updateNote(long rowId, byte[] newBody, char[] passcode) {
+    // Updates Note in database after editing & encrypts if necessary (Notes saved with an older scheme are migrated to the current scheme)
+    // Returns false if nothing was written (passcode doesn't unwrap saved Data Key, or note no longer exists)
+    boolean updateNote(long rowId, byte[] newBody, char[] passcode) {
 
         long date = System.currentTimeMillis();
 
@@ -292,104 +447,117 @@ class NoteDBAdapter {
 
         if (cursor!=null) {
 
-            String where = KEY_ROWID + "=" + cursor.getInt(COL_ROWID);
-            int scheme = cursor.getInt(COL_SCHEME);
-            String salt = "";
-            String iv = "";
-            String encodedPasscodeHash = "";
-            String encodedPasscodeSaltHalf = "";
-            byte [] passcodeSaltHalf;
+            EncryptionScheme scheme = getEncryptionScheme(cursor);
 
             ContentValues updateValues = new ContentValues();
+            byte[][] chunks;
 
             // If passcode is supplied (Note is intended to be encrypted), then encrypt note body
             if (passcode!=null) {
 
-                // Set Encryption Scheme Parameters
-                setSchemeParameters(scheme);
+                // If note is already encrypted with current scheme, then saved salt, verifier & wrapped Data Key are kept (& cached key is used), otherwise migrate to current scheme with new salt
+                if ((getBytes(cursor, COL_IV).length > 0) & scheme.equals(currentScheme())) {
 
-                String savedPasscodeHash = cursor.getString(COL_PASSCODE_HASH);
+                    SecretKey key = getBodyKey(scheme, rowId, passcode, getBytes(cursor, COL_SALT), getBytes(cursor, COL_WRAPPED_KEY));
 
-                // If a Passcode Hash is saved, then note was previously encrypted, & can use saved iv, salt, & passcode salt, otherwise generate new ones
-                if (!savedPasscodeHash.equals("")) {
+                    if (key == null) {
 
-                    // Get Saved Salt & IV
-                    iv = cursor.getString(COL_IV);
-                    salt = cursor.getString(COL_SALT);
-                    encodedPasscodeSaltHalf = cursor.getString(COL_PASSCODE_SALT);
-                    passcodeSaltHalf = Base64.decode(encodedPasscodeSaltHalf, 0);
+                        // Passcode doesn't unwrap saved Data Key, so note isn't overwritten
+                        cursor.close();
+
+                        return false;
+                    }
+
+                    // Generate New IV every save (an IV is never reused with the same key)
+                    byte[] iv = generateNewIv(scheme);
+                    chunks = chunkBody(scheme, newBody, key, iv, updateValues);
+                    updateValues.put(KEY_IV, iv);
                 }
                 else {
 
-                    // Generate Salt & IV
-                    SecureRandom random = new SecureRandom();
-                    byte[] saltBytes = new byte[16];
-                    random.nextBytes(saltBytes);
-                    byte[] ivBytes = generateNewIv();
-                    salt = Base64.encodeToString(saltBytes, 0);
-                    iv = Base64.encodeToString(ivBytes, 0);
-
-                    // Create passcode salt half
-                    byte[] newPasscodeSaltHalf = new byte[16];
-                    random.nextBytes(newPasscodeSaltHalf);
-                    encodedPasscodeSaltHalf = Base64.encodeToString(newPasscodeSaltHalf, 0);
-                    passcodeSaltHalf = newPasscodeSaltHalf;
+                    scheme = currentScheme();
+
+                    chunks = encryptWithNewSalt(scheme, rowId, passcode, newBody, updateValues);
                 }
+            }
+            else {
 
-                // Generate Key from passcode & encrypt note
-                SecretKey key = generateKeyFromPasscode(passcode, salt.getBytes());
-                byte[] encryptedBody = encryptBody(newBody, key, iv.getBytes());
+                putUnencryptedValues(updateValues);
+                chunks = chunkBody(scheme, newBody, null, null, updateValues);
+            }
 
-                // Hash Passcode for saving
-                try {
+            // Setup Row Data (Name is unchanged)
+            updateValues.put(KEY_DATE, date);
+            updateValues.put(KEY_SCHEME, scheme.code);
+            updateValues.put(KEY_PASSCODE_SALT, new byte[0]);
 
-                    // 1st half (16 bytes) of passcode salt is hardcoded, 2nd half is generated with PRNG and stored in Note DB & added at runtime (salt length should be same as output)
-                    byte[] passcodeSalt = new byte[]{'1', 'X', '2', 'h', '^', '+', 'o', 'x', '|', ')', '%', '8', '=', 'r', 'd', 'R', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'};
+            // Update Note in database
+            updateNoteAndBody(rowId, updateValues, chunks);
 
-                    // Combine Passcode Salt Halves
-                    for (int i = 0; i < 16; i++) {
+            // Note was saved, so Bad Passcode Count is cleared
+            resetBadPasscode(rowId);
 
-                        passcodeSalt[16 + i] = passcodeSaltHalf[i];
-                    }
+            cursor.close();
 
-                    // Generate Passcode Hash
-                    SecretKeyFactory hashKeyFactory = SecretKeyFactory.getInstance(passcodeHashAlgorithm);
-                    KeySpec hashKeySpec = new PBEKeySpec(passcode, passcodeSalt, iterationCount, keyLength);
-                    byte[] hashBytes = hashKeyFactory.generateSecret(hashKeySpec).getEncoded();
-                    encodedPasscodeHash = Base64.encodeToString(hashBytes, 0);
-                }
-                catch (NoSuchAlgorithmException noSuchAlgorithm) {
+            NoteChangeBus.post(rowId, NoteChangeBus.UPDATED);
 
-                    //Log.d("A", "No Such Alogrithm Exception!  Passcode hash not generated!");
+            return true;
+        }
 
-                }
-                catch (InvalidKeySpecException invalidKeySpec) {
+        return false;
+    }
 
-                    //Log.d("A", "Invalid Key Spec Exception!  Passcode hash not generated!");
-                }
+    // Generates New Salt & IV, derives key from passcode & returns Note Body encrypted into chunks, setting Storage Format (rowId of -1 skips cache)
+    // Envelope schemes encrypt the body with a new random Data Key, which is saved wrapped by the passcode derived key
+    private byte[][] encryptWithNewSalt(EncryptionScheme scheme, long rowId, char[] passcode, byte[] body, ContentValues metadataValues) {
 
-                updateValues.put(KEY_BODY, new String(encryptedBody));
-            }
-            else {
+        byte[] passcodeHash = new byte[0];
+        byte[] wrappedKey = new byte[0];
 
-                updateValues.put(KEY_BODY, new String(newBody));
-            }
+        // Generate Salt & IV
+        CryptoContext crypto = CryptoContext.get();
+        byte[] salt = crypto.randomBytes(16);
+        byte[] iv = generateNewIv(scheme);
 
-            // Setup Row Data
-            updateValues.put(KEY_NAME, cursor.getString(COL_NAME));
-            updateValues.put(KEY_DATE, date);
-            updateValues.put(KEY_SCHEME, scheme);
-            updateValues.put(KEY_SALT, salt);
-            updateValues.put(KEY_IV, iv);
-            updateValues.put(KEY_PASSCODE_HASH, encodedPasscodeHash);
-            updateValues.put(KEY_PASSCODE_SALT, encodedPasscodeSaltHalf);
-            updateValues.put(KEY_BAD_PASSCODE, 0);
+        // Generate Verifier & Key from Passcode
+        byte[] verifierAndKey = deriveVerifierAndKey(scheme, rowId, passcode, salt);
+        SecretKey key = new SecretKeySpec(verifierAndKey, VERIFIER_LENGTH, VERIFIER_LENGTH, scheme.keyType);
 
-            // Update Note in database
-            noteDb.update(DATABASE_NOTE_TABLE, updateValues, where, null);
+        if (scheme.envelope) {
 
-            cursor.close();
+            // Generate Data Key & wrap with passcode derived key
+            byte[] dataKeyBytes = crypto.randomBytes(scheme.keyLength / 8);
+            wrappedKey = wrapDataKey(scheme, key, dataKeyBytes);
+            key = new SecretKeySpec(dataKeyBytes, scheme.keyType);
+            Arrays.fill(dataKeyBytes, (byte) 0);
+        }
+
+        byte[][] chunks = chunkBody(scheme, body, key, iv, metadataValues);
+
+        if (!scheme.authenticatedEncryption) {
+
+            passcodeHash = Arrays.copyOf(verifierAndKey, VERIFIER_LENGTH);
         }
+
+        Arrays.fill(verifierAndKey, (byte) 0);
+
+        metadataValues.put(KEY_SALT, salt);
+        metadataValues.put(KEY_IV, iv);
+        metadataValues.put(KEY_PASSCODE_HASH, passcodeHash);
+        metadataValues.put(KEY_WRAPPED_KEY, wrappedKey);
+        metadataValues.put(KEY_ITERATIONS, scheme.iterationCount);
+
+        return chunks;
+    }
+
+    // Sets empty Salt, IV, Passcode Hash & Wrapped Key in Row Data for unencrypted note
+    private void putUnencryptedValues(ContentValues metadataValues) {
+
+        metadataValues.put(KEY_SALT, new byte[0]);
+        metadataValues.put(KEY_IV, new byte[0]);
+        metadataValues.put(KEY_PASSCODE_HASH, new byte[0]);
+        metadataValues.put(KEY_WRAPPED_KEY, new byte[0]);
+        metadataValues.put(KEY_ITERATIONS, 0);
     }
 
     // Returns Note Body for Note View Activity (Decrypting if necessary)
@@ -401,24 +569,26 @@ class NoteDBAdapter {
 
         if (noteCursor != null) {
 
-            byte[] savedBody = noteCursor.getString(COL_BODY).getBytes();
-
             // If note is encrypted, then decrypt, otherwise just return saved note body
             if (passcode!=null) {
 
-                // Set Encryption Scheme Parameters
-                setSchemeParameters(noteCursor.getInt(COL_SCHEME));
+                // Look up Encryption Scheme
+                EncryptionScheme scheme = getEncryptionScheme(noteCursor);
 
-                byte[] iv = noteCursor.getString(COL_IV).getBytes();
-                byte[] salt = noteCursor.getString(COL_SALT).getBytes();
+                byte[] iv = getBytes(noteCursor, COL_IV);
+                byte[] salt = getBytes(noteCursor, COL_SALT);
 
                 // Generate Key from passcode & decrypt note
-                SecretKey key = generateKeyFromPasscode(passcode, salt);
-                body = decryptBody(savedBody, key, iv);
+                SecretKey key = getBodyKey(scheme, rowId, passcode, salt, getBytes(noteCursor, COL_WRAPPED_KEY));
+
+                if (key != null) {
+
+                    body = readBody(noteCursor, scheme, key);
+                }
             }
             else {
 
-               body = savedBody;
+               body = readBody(noteCursor, null, null);
             }
 
             noteCursor.close();
@@ -428,40 +598,31 @@ class NoteDBAdapter {
     }
 
     // Generates IV for encrypting Note Body
-    private byte[] generateNewIv() {
+    private byte[] generateNewIv(EncryptionScheme scheme) {
 
-        SecureRandom random = new SecureRandom();
-        byte[] returnIvBytes = null;
-
-        try {
+        return CryptoContext.get().randomBytes(scheme.ivLength);
+    }
 
-            Cipher cipher = Cipher.getInstance(encryptionType);
-            byte[] ivBytes = new byte[cipher.getBlockSize()];
-            random.nextBytes(ivBytes);
-            returnIvBytes = ivBytes;
-        }
-        catch (NoSuchAlgorithmException noSuchAlgorithm) {
+    // Returns IV Parameters for scheme encryption type (Authenticated encryption also needs tag length)
+    private AlgorithmParameterSpec getIvParameterSpec(EncryptionScheme scheme, byte[] iv) {
 
-            //Log.d("A", "No Such Alogrithm Exception!  Note not Encrypted!");
-        }
-        catch (NoSuchPaddingException noSuchPadding) {
+        if (scheme.authenticatedEncryption) {
 
-            //Log.d("A", "No Such Padding Exception!  Note not Encrypted!");
+            return new GCMParameterSpec(EncryptionScheme.GCM_TAG_LENGTH, iv);
         }
 
-        return returnIvBytes;
+        return new IvParameterSpec(iv);
     }
 
-    // Encrypts and base-64 encodes Note Body byte array
-    private byte[] encryptBody (byte[] bodyToEncrypt, SecretKey key, byte[] iv ) {
+    // Encrypts Note Body byte array
+    private byte[] encryptBody (EncryptionScheme scheme, byte[] bodyToEncrypt, SecretKey key, byte[] iv ) {
 
         byte[] encryptedBody = new byte[bodyToEncrypt.length];
-        byte[] decodedIv = Base64.decode(iv, 0);
 
         try {
 
-            Cipher cipher = Cipher.getInstance(encryptionType);
-            IvParameterSpec ivParams = new IvParameterSpec(decodedIv);
+            Cipher cipher = CryptoContext.get().getCipher(scheme.encryptionType);
+            AlgorithmParameterSpec ivParams = getIvParameterSpec(scheme, iv);
 
             try {
 
@@ -494,77 +655,128 @@ class NoteDBAdapter {
             //Log.d("A", "No Such Padding Exception!  Note Body not Encrypted!");
         }
 
-        return Base64.encode(encryptedBody, 0);
+        return encryptedBody;
+    }
+
+    // Deflates Note Body (if that saves enough), splits into chunks & encrypts them unless key is null, setting Storage Format in Row Data
+    private byte[][] chunkBody(EncryptionScheme scheme, byte[] body, SecretKey key, byte[] iv, ContentValues metadataValues) {
+
+        byte[] deflatedBody = BodyCompression.deflate(body);
+        byte[] savedBody = (deflatedBody != null) ? deflatedBody : body;
+
+        byte[][] chunks = (key != null) ? encryptChunks(scheme, savedBody, key, iv) : ChunkedBodyCipher.split(savedBody);
+
+        if (deflatedBody != null) {
+
+            Arrays.fill(deflatedBody, (byte) 0);
+        }
+
+        metadataValues.put(KEY_FORMAT, (deflatedBody != null) ? FORMAT_DEFLATED : FORMAT_CHUNKED);
+
+        return chunks;
+    }
+
+    // Encrypts Note Body into chunks
+    private byte[][] encryptChunks(EncryptionScheme scheme, byte[] bodyToEncrypt, SecretKey key, byte[] iv) {
+
+        try {
+
+            return ChunkedBodyCipher.encrypt(scheme, key, iv, bodyToEncrypt);
+        }
+        catch (GeneralSecurityException generalSecurity) {
+
+            //Log.d("A", "General Security Exception!  Note Body not Encrypted!");
+
+            return ChunkedBodyCipher.split(new byte[bodyToEncrypt.length]);
+        }
     }
 
-    // Base-64 decodes and decrypts Note Body byte array
-    private byte[] decryptBody (byte[] bodyToDecrypt, SecretKey key, byte[] iv ) {
+    // Decrypts Note Body byte array (returns null if decryption fails for any reason, so a wrong key never yields a body which could be saved back)
+    private byte[] decryptBody (EncryptionScheme scheme, byte[] bodyToDecrypt, SecretKey key, byte[] iv ) {
 
-        byte[] decodedBody = Base64.decode(bodyToDecrypt, 0);
-        byte[] decodedIv = Base64.decode(iv, 0);
-        byte[] decryptedBody = new byte[decodedBody.length];
+        byte[] decryptedBody = null;
 
         try {
 
-            Cipher cipher = Cipher.getInstance(encryptionType);
-            IvParameterSpec ivParams = new IvParameterSpec(decodedIv);
+            Cipher cipher = CryptoContext.get().getCipher(scheme.encryptionType);
+            AlgorithmParameterSpec ivParams = getIvParameterSpec(scheme, iv);
 
             try {
 
                 cipher.init(Cipher.DECRYPT_MODE, key, ivParams);
-                decryptedBody = cipher.doFinal(decodedBody);
+                decryptedBody = cipher.doFinal(bodyToDecrypt);
+            }
+            catch (AEADBadTagException badTag) {
+
+                // Authentication failed (incorrect passcode or modified note)
             }
             catch (InvalidKeyException invalidKey) {
 
-                //Log.d("A", "Invalid Key Exception!  Note Body not Encrypted!");
+                //Log.d("A", "Invalid Key Exception!  Note Body not Decrypted!");
             }
             catch (InvalidAlgorithmParameterException invalidAlgorithmParameter) {
 
-                //Log.d("A", "Invalid Algorithm Parameter Exception!  Note Body not Encrypted!");
+                //Log.d("A", "Invalid Algorithm Parameter Exception!  Note Body not Decrypted!");
             }
             catch (IllegalBlockSizeException illegalBlockSize) {
 
-                //Log.d("A", "Illegal Block Size Exception!  Note Body not Encrypted!");
+                //Log.d("A", "Illegal Block Size Exception!  Note Body not Decrypted!");
             }
             catch (BadPaddingException badPadding) {
 
-                //Log.d("A", "Bad Padding Exception!  Note Body not Encrypted!");
+                // Padding check failed (usually incorrect passcode for unauthenticated schemes)
+                //Log.d("A", "Bad Padding Exception!  Note Body not Decrypted!");
             }
         }
         catch (NoSuchAlgorithmException noSuchAlgorithm) {
 
-            //Log.d("A", "No Such Alogrithm Exception!  Note Body not Encrypted!");
+            //Log.d("A", "No Such Alogrithm Exception!  Note Body not Decrypted!");
         }
         catch (NoSuchPaddingException noSuchPadding) {
 
-            //Log.d("A", "No Such Padding Exception!  Note Body not Encrypted!");
+            //Log.d("A", "No Such Padding Exception!  Note Body not Decrypted!");
         }
 
         return decryptedBody;
     }
 
-    // Generates Encryption Key from passcode using Key Extension Algorithm
-    private SecretKey generateKeyFromPasscode(char[] passcode, byte[] savedSalt ) {
+    // Generates Encryption Key from passcode using Key Extension Algorithm (or returns key already derived this session for rowId & salt, rowId of -1 skips cache)
+    private SecretKey generateKeyFromPasscode(EncryptionScheme scheme, long rowId, char[] passcode, byte[] savedSalt ) {
 
         SecretKey key;
 
         // 1st half (16 bytes) of salt is hardcoded, 2nd half is generated with PRNG and stored in Note DB & added at runtime (salt length should be same as output, 32 bytes)
         byte[] salt = new byte[] {'a', 'y', 'K', ',', 'k', 'S', '%', 'C', 'd', '$', 'e', 'a', '4', 'D', '=', 'I', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x' };
-        byte[] newSalt = Base64.decode(savedSalt, 0);
-
         // Combine Salt Halves & overwrite
         for ( int i = 0; i < 16; i++) {
 
-            salt[16+i] = newSalt[i];
+            salt[16+i] = savedSalt[i];
+        }
+
+        // Use Key from Session Cache if available
+        byte[] cachedKeyBytes = (rowId >= 0) ? keyCache.get(rowId, salt, passcode) : null;
+
+        if (cachedKeyBytes != null) {
+
+            key = new SecretKeySpec(cachedKeyBytes, scheme.keyType);
+            Arrays.fill(cachedKeyBytes, (byte) 0);
+
+            return key;
         }
 
         try {
 
             // Generate Key
-            SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(passcodeKeyExtensionAlgorithm);
-            KeySpec keySpec = new PBEKeySpec(passcode, salt, iterationCount, keyLength);
-            byte[] keyBytes = keyFactory.generateSecret(keySpec).getEncoded();
-            key = new SecretKeySpec(keyBytes, keyType);
+            byte[] keyBytes = scheme.kdf.derive(passcode, salt, scheme.keyLength);
+            key = new SecretKeySpec(keyBytes, scheme.keyType);
+
+            // Save Key in Session Cache
+            if (rowId >= 0) {
+
+                keyCache.put(rowId, salt, passcode, keyBytes);
+            }
+
+            Arrays.fill(keyBytes, (byte) 0);
         }
         catch (NoSuchAlgorithmException noSuchAlgorithm) {
 
@@ -572,13 +784,13 @@ class NoteDBAdapter {
 
             String badKey = "";
 
-            for ( int i = 0; i < keyLength; i++ ) {
+            for ( int i = 0; i < scheme.keyLength; i++ ) {
 
                 badKey += "x";
             }
 
             byte[] badKeyBytes = badKey.getBytes();
-            key = new SecretKeySpec(badKeyBytes, keyType);
+            key = new SecretKeySpec(badKeyBytes, scheme.keyType);
 
             //Log.d("A", "No Such Alogrithm Exception!  Real Key not generated!");
         }
@@ -588,13 +800,13 @@ class NoteDBAdapter {
 
             String badKey = "";
 
-            for ( int i = 0; i < keyLength; i++ ) {
+            for ( int i = 0; i < scheme.keyLength; i++ ) {
 
                 badKey += "x";
             }
 
             byte[] badKeyBytes = badKey.getBytes();
-            key = new SecretKeySpec(badKeyBytes, keyType);
+            key = new SecretKeySpec(badKeyBytes, scheme.keyType);
 
             //Log.d("A", "Invalid Key Spec Exception!  Real Key not generated!");
         }
@@ -602,453 +814,1278 @@ class NoteDBAdapter {
         return key;
     }
 
-    // Compares entered passcode with saved database passcode (returns 0 if passcodes don't match, 1 if they do match, or 2 if no passcode is saved)
-    int checkPasscode (long rowId, char[] passcode) {
+    // Generates Encryption Key for scheme (single pass or separate key extension)
+    private SecretKey getNoteKey(EncryptionScheme scheme, long rowId, char[] passcode, byte[] savedSalt) {
 
-        // Get saved salt or create new salt for hashing passcode
-        // 1st half (16 bytes) of passcode salt is hardcoded, 2nd half is generated with PRNG and stored in Note DB & added at runtime (salt length should be same as output)
-        byte[] passcodeSalt = new byte[]{'1', 'X', '2', 'h', '^', '+', 'o', 'x', '|', ')', '%', '8', '=', 'r', 'd', 'R', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'};
-        byte[] newPasscodeSalt;
-        String savedPasscodeSalt = getPasscodeSalt(rowId);
+        if (scheme.singlePassKdf) {
 
-        // Get Saved Passcode salt if available
-        if (!savedPasscodeSalt.equals("")) {
+            byte[] verifierAndKey = deriveVerifierAndKey(scheme, rowId, passcode, savedSalt);
+            SecretKey key = new SecretKeySpec(verifierAndKey, VERIFIER_LENGTH, VERIFIER_LENGTH, scheme.keyType);
+            Arrays.fill(verifierAndKey, (byte) 0);
 
-            newPasscodeSalt = Base64.decode(savedPasscodeSalt.getBytes(), 0);
+            return key;
         }
-        else {
 
-            // If no Passcode Salt is found, then no passcode is saved, return 2
-            return 2;
-        }
+        return generateKeyFromPasscode(scheme, rowId, passcode, savedSalt);
+    }
 
-        // Combine Passcode Salt Halves
-        for (int i = 0; i < 16; i++) {
+    // Returns Key which encrypts Note Body (Envelope schemes unwrap the Data Key with the passcode derived key & return null if passcode is incorrect)
+    private SecretKey getBodyKey(EncryptionScheme scheme, long rowId, char[] passcode, byte[] savedSalt, byte[] wrappedKey) {
+
+        SecretKey key = getNoteKey(scheme, rowId, passcode, savedSalt);
 
-            passcodeSalt[16 + i] = newPasscodeSalt[i];
+        if (scheme.envelope) {
+
+            return unwrapDataKey(scheme, key, wrappedKey);
         }
 
-        String encodedPasscodeHash = "";
+        return key;
+    }
 
-        // Hash Passcode for comparison with saved hashed pascode if entered passcode is not blank
-        if ( passcode!=null ) {
+    // Wraps Data Key with passcode derived key (Wrapped Key is IV followed by encrypted Data Key & Authentication Tag)
+    private byte[] wrapDataKey(EncryptionScheme scheme, SecretKey passcodeKey, byte[] dataKeyBytes) {
 
-            // Set Encryption Scheme Parameters
-            setSchemeParameters(getScheme(rowId));
+        byte[] wrapIv = generateNewIv(scheme);
+        byte[] encryptedDataKey = encryptBody(scheme, dataKeyBytes, passcodeKey, wrapIv);
 
-            try {
+        byte[] wrappedKey = new byte[wrapIv.length + encryptedDataKey.length];
+        System.arraycopy(wrapIv, 0, wrappedKey, 0, wrapIv.length);
+        System.arraycopy(encryptedDataKey, 0, wrappedKey, wrapIv.length, encryptedDataKey.length);
 
-                // Hash Passcode
-                SecretKeyFactory hashKeyFactory = SecretKeyFactory.getInstance(passcodeHashAlgorithm);
-                KeySpec hashKeySpec = new PBEKeySpec(passcode, passcodeSalt, iterationCount, keyLength);
-                byte[] hashBytes = hashKeyFactory.generateSecret(hashKeySpec).getEncoded();
-                encodedPasscodeHash = Base64.encodeToString(hashBytes, 0);
-            }
-            catch (NoSuchAlgorithmException noSuchAlgorithm) {
+        return wrappedKey;
+    }
 
-                //Log.d("A", "No Such Alogrithm Exception!  Passcode hash not generated!");
+    // Unwraps Data Key with passcode derived key (returns null if passcode derived key is incorrect)
+    private SecretKey unwrapDataKey(EncryptionScheme scheme, SecretKey passcodeKey, byte[] wrappedKey) {
 
-            }
-            catch (InvalidKeySpecException invalidKeySpec) {
+        if (wrappedKey.length <= scheme.ivLength) {
 
-                //Log.d("A", "Invalid Key Spec Exception!  Passcode hash not generated!");
-            }
+            return null;
         }
 
-        return comparePasscodeHashes(rowId, encodedPasscodeHash);
-    }
+        byte[] wrapIv = Arrays.copyOf(wrappedKey, scheme.ivLength);
+        byte[] encryptedDataKey = Arrays.copyOfRange(wrappedKey, scheme.ivLength, wrappedKey.length);
+        byte[] dataKeyBytes = decryptBody(scheme, encryptedDataKey, passcodeKey, wrapIv);
 
-    // Performs actual comparison of entered passcode Hash with saved database passcode Hash (returns 0 if passcodes don't match, 1 if they do match, or 2 if no passcode is saved)
-    private int comparePasscodeHashes(long rowId, String passcodeHash) {
+        if (dataKeyBytes == null) {
 
-        String savedPasscodeHash;
-        int isPasscodeCorrect = 0;
+            return null;
+        }
 
-        Cursor cursor = getRow(rowId);
-        cursor.moveToFirst();
+        SecretKey dataKey = new SecretKeySpec(dataKeyBytes, scheme.keyType);
+        Arrays.fill(dataKeyBytes, (byte) 0);
 
-        savedPasscodeHash = cursor.getString(COL_PASSCODE_HASH);
+        return dataKey;
+    }
 
-        if (savedPasscodeHash.equals("")) {
+    // Derives Passcode Verifier (1st 32 bytes) & Encryption Key (2nd 32 bytes) from a single Key Extension run (or returns bytes already derived this session for rowId & salt, rowId of -1 skips cache)
+    // PBKDF2 computes every output block with the full iteration count, so only one block is computed & the verifier & key are expanded from it with HMAC
+    private byte[] deriveVerifierAndKey(EncryptionScheme scheme, long rowId, char[] passcode, byte[] savedSalt) {
 
-            // No passcode is saved
+        // 1st half (16 bytes) of salt is hardcoded, 2nd half is generated with PRNG and stored in Note DB & added at runtime (salt length should be same as output, 32 bytes)
+        byte[] salt = new byte[] {'a', 'y', 'K', ',', 'k', 'S', '%', 'C', 'd', '$', 'e', 'a', '4', 'D', '=', 'I', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x' };
+        // Combine Salt Halves & overwrite
+        for ( int i = 0; i < 16; i++) {
 
-            isPasscodeCorrect = 2;
+            salt[16+i] = savedSalt[i];
         }
-        else if (passcodeHash.equals(savedPasscodeHash)) {
-
-            // Passcodes match
 
-            isPasscodeCorrect = 1;
+        // Use Verifier & Key from Session Cache if available
+        byte[] verifierAndKey = (rowId >= 0) ? keyCache.get(rowId, salt, passcode) : null;
 
-            // If Bad Passcode Field is something other than zero, then reset
-            if (cursor.getInt(COL_BAD_PASSCODE)!=0) {
+        if ( (verifierAndKey != null) && (verifierAndKey.length == 2 * VERIFIER_LENGTH) ) {
 
-                resetBadPasscode(cursor);
-            }
+            return verifierAndKey;
         }
-        else {
 
-            // Passcodes don't match
+        verifierAndKey = new byte[2 * VERIFIER_LENGTH];
 
-            isPasscodeCorrect = 0;
+        try {
 
-            // Updates count of bad passcode entries in database for note locking
-            updateBadPasscode(cursor);
-        }
+            // Generate Master Key (single PRF block for PBKDF2)
+            byte[] masterKeyBytes = scheme.kdf.derive(passcode, salt, scheme.masterKeyLength);
 
-        cursor.close();
+            // Expand Master Key into Verifier & Key
+            Mac expansionMac = CryptoContext.get().getMac(KDF_EXPANSION_ALGORITHM);
+            expansionMac.init(new SecretKeySpec(masterKeyBytes, KDF_EXPANSION_ALGORITHM));
+            Arrays.fill(masterKeyBytes, (byte) 0);
 
-        return isPasscodeCorrect;
-    }
+            byte[] verifierBytes = expansionMac.doFinal(VERIFIER_EXPANSION_INFO);
+            byte[] keyBytes = expansionMac.doFinal(KEY_EXPANSION_INFO);
 
-    // Resets Bad Passcode Field to Zero after successful passcode entry
-    private void resetBadPasscode(Cursor noteCursor) {
+            System.arraycopy(verifierBytes, 0, verifierAndKey, 0, VERIFIER_LENGTH);
+            System.arraycopy(keyBytes, 0, verifierAndKey, VERIFIER_LENGTH, VERIFIER_LENGTH);
+            Arrays.fill(verifierBytes, (byte) 0);
+            Arrays.fill(keyBytes, (byte) 0);
 
-        if (noteCursor!=null) {
+            // Save Verifier & Key in Session Cache
+            if (rowId >= 0) {
 
-            String where = KEY_ROWID + "=" + noteCursor.getInt(COL_ROWID);
-            ContentValues updateValues = new ContentValues();
+                keyCache.put(rowId, salt, passcode, verifierAndKey);
+            }
+        }
+        catch (NoSuchAlgorithmException noSuchAlgorithm) {
 
-            // Setup Row Data
-            updateValues.put(KEY_NAME, noteCursor.getString(COL_NAME));
-            updateValues.put(KEY_DATE, noteCursor.getLong(COL_DATE));
-            updateValues.put(KEY_BODY, noteCursor.getString(COL_BODY));
-            updateValues.put(KEY_SCHEME, noteCursor.getInt(COL_SCHEME));
-            updateValues.put(KEY_SALT, noteCursor.getString(COL_SALT));
-            updateValues.put(KEY_IV, noteCursor.getString(COL_IV));
-            updateValues.put(KEY_PASSCODE_HASH, noteCursor.getString(COL_PASSCODE_HASH));
-            updateValues.put(KEY_PASSCODE_SALT, noteCursor.getString(COL_PASSCODE_SALT));
-            updateValues.put(KEY_BAD_PASSCODE, 0);
+            // Genearate Fake Verifier & Key to avoid crash
+            Arrays.fill(verifierAndKey, (byte) 'x');
 
-            noteDb.update(DATABASE_NOTE_TABLE, updateValues, where, null);
+            //Log.d("A", "No Such Alogrithm Exception!  Real Key not generated!");
         }
-    }
+        catch (InvalidKeySpecException invalidKeySpec) {
+
+            // Genearate Fake Verifier & Key to avoid crash
+            Arrays.fill(verifierAndKey, (byte) 'x');
+
+            //Log.d("A", "Invalid Key Spec Exception!  Real Key not generated!");
+        }
+        catch (InvalidKeyException invalidKey) {
 
-    // Update Bad Passcode Field with number of bad attempts unitl 3 is reached and then store system time stamp for purposes of locking
-    private void updateBadPasscode(Cursor noteCursor) {
+            // Genearate Fake Verifier & Key to avoid crash
+            Arrays.fill(verifierAndKey, (byte) 'x');
 
-        if (noteCursor!=null) {
+            //Log.d("A", "Invalid Key Exception!  Real Key not generated!");
+        }
 
-            long badPasscode = noteCursor.getLong(COL_BAD_PASSCODE);
+        return verifierAndKey;
+    }
 
-            if (badPasscode == 0) {
+    // Derives key & decrypts Note Body in one step, verifying passcode (returns null if passcode is incorrect).  Bad passcode entries are counted for note locking.
+    byte[] unlockNote(long rowId, char[] passcode) {
 
-                badPasscode = 1;
-            }
-            else if (badPasscode == 1) {
+        byte[] body = null;
 
-                badPasscode = 2;
-            }
-            else if (badPasscode == 2) {
+        Cursor noteCursor = getRow(rowId);
 
-                badPasscode = System.currentTimeMillis();
-            }
+        if (noteCursor != null) {
 
-            String where = KEY_ROWID + "=" + noteCursor.getInt(COL_ROWID);
-            ContentValues updateValues = new ContentValues();
+            // Look up Encryption Scheme
+            EncryptionScheme scheme = getEncryptionScheme(noteCursor);
 
-            // Setup Row Data
-            updateValues.put(KEY_NAME, noteCursor.getString(COL_NAME));
-            updateValues.put(KEY_DATE, noteCursor.getLong(COL_DATE));
-            updateValues.put(KEY_BODY, noteCursor.getString(COL_BODY));
-            updateValues.put(KEY_SCHEME, noteCursor.getInt(COL_SCHEME));
-            updateValues.put(KEY_SALT, noteCursor.getString(COL_SALT));
-            updateValues.put(KEY_IV, noteCursor.getString(COL_IV));
-            updateValues.put(KEY_PASSCODE_HASH, noteCursor.getString(COL_PASSCODE_HASH));
-            updateValues.put(KEY_PASSCODE_SALT, noteCursor.getString(COL_PASSCODE_SALT));
-            updateValues.put(KEY_BAD_PASSCODE, badPasscode);
+            if (getBytes(noteCursor, COL_IV).length == 0) {
 
-            noteDb.update(DATABASE_NOTE_TABLE, updateValues, where, null);
-        }
-    }
+                // Note isn't encrypted
 
-    // Determines whether or not note has been locked due to bad passcode entries
-    boolean isNoteLocked(long rowId) {
+                body = readBody(noteCursor, scheme, null);
+            }
+            else if (scheme.authenticatedEncryption) {
 
-        Cursor noteCursor = getRow(rowId);
+                // Authentication Tag verifies passcode during decryption
 
-        if (noteCursor.moveToFirst()) {
+                if (passcode!=null) {
 
-            long badPasscode = noteCursor.getLong(COL_BAD_PASSCODE);
+                    SecretKey key = getBodyKey(scheme, rowId, passcode, getBytes(noteCursor, COL_SALT), getBytes(noteCursor, COL_WRAPPED_KEY));
 
-            // Note is not locked if passcode attempts are less than 3 or if proper time has elapsed ( 300,000 ms = 5 min )
-            if ( ( badPasscode >= 0 ) & (badPasscode <= 2) ) {
+                    if (key != null) {
 
-                noteCursor.close();
-                return false;
+                        body = readBody(noteCursor, scheme, key);
+                    }
+                }
+
+                recordPasscodeEntry(rowId, body != null);
             }
-            else if ( System.currentTimeMillis() >= (badPasscode + 300000)) {
+            else {
 
-                resetBadPasscode(noteCursor);
+                // Saved passcode verifier is checked before decryption
 
                 noteCursor.close();
-                return false;
+
+                if (checkPasscode(rowId, passcode) == 1) {
+
+                    return decryptNote(rowId, passcode);
+                }
+
+                return null;
             }
 
             noteCursor.close();
         }
 
-        return true;
+        return body;
     }
 
-    private String getPasscodeSalt (long rowId) {
+    // Clears Bad Passcode Count after correct passcode, or counts bad passcode entry for note locking (Authenticated schemes)
+    private void recordPasscodeEntry(long rowId, boolean isPasscodeCorrect) {
 
-        Cursor cursor = getRow(rowId);
-        String passcodeSalt = "";
+        if (isPasscodeCorrect) {
 
-        if (cursor != null) {
+            // If Bad Passcode Count is something other than zero, then reset
+            if (getBadPasscode(rowId)!=0) {
 
-            passcodeSalt = cursor.getString(COL_PASSCODE_SALT);
-            cursor.close();
+                resetBadPasscode(rowId);
+            }
+        }
+        else {
+
+            // Passcode derived key is wrong, so it mustn't be reused from session cache
+            keyCache.evict(rowId);
+
+            // Updates count of bad passcode entries in database for note locking
+            updateBadPasscode(rowId);
+        }
+    }
+
+    // Compares entered passcode with saved database passcode (returns 0 if passcodes don't match, 1 if they do match, or 2 if no passcode is saved)
+    int checkPasscode (long rowId, char[] passcode) {
+
+        // If note isn't encrypted, then no passcode is saved, return 2
+        if (!isEncrypted(rowId)) {
+
+            return 2;
+        }
+
+        // Look up Encryption Scheme
+        EncryptionScheme scheme = getEncryptionScheme(rowId);
+
+        // Envelope notes are checked by unwrapping the Data Key (Note Body isn't decrypted)
+        if (scheme.envelope) {
+
+            boolean isPasscodeCorrect = (passcode!=null) && (getBodyKey(scheme, rowId, passcode, getSalt(rowId), getWrappedKey(rowId)) != null);
+
+            recordPasscodeEntry(rowId, isPasscodeCorrect);
+
+            return isPasscodeCorrect ? 1 : 0;
+        }
+
+        // Other authenticated notes have no saved verifier, so passcode is checked by decrypting
+        if (scheme.authenticatedEncryption) {
+
+            byte[] body = unlockNote(rowId, passcode);
+
+            if (body == null) {
+
+                return 0;
+            }
+
+            Arrays.fill(body, (byte) 0);
+
+            return 1;
+        }
+
+        byte[] passcodeHash = new byte[0];
+
+        // Hash Passcode for comparison with saved hashed pascode if entered passcode is not blank
+        if ( passcode!=null ) {
+
+            if (scheme.singlePassKdf) {
+
+                // Verifier is derived along with key (key is cached for decryption)
+                byte[] verifierAndKey = deriveVerifierAndKey(scheme, rowId, passcode, getSalt(rowId));
+                passcodeHash = Arrays.copyOf(verifierAndKey, VERIFIER_LENGTH);
+                Arrays.fill(verifierAndKey, (byte) 0);
+            }
+            else {
+
+                passcodeHash = hashPasscode(scheme, rowId, passcode, getPasscodeSalt(rowId));
+            }
+        }
+
+        return comparePasscodeHashes(rowId, passcodeHash);
+    }
+
+    // Hashes passcode with Passcode Hash Algorithm & returns hash, empty if not generated (or returns hash already derived this session for rowId & salt, rowId of -1 skips cache)
+    private byte[] hashPasscode(EncryptionScheme scheme, long rowId, char[] passcode, byte[] passcodeSaltHalf) {
+
+        // 1st half (16 bytes) of passcode salt is hardcoded, 2nd half is generated with PRNG and stored in Note DB & added at runtime (salt length should be same as output)
+        byte[] passcodeSalt = new byte[]{'1', 'X', '2', 'h', '^', '+', 'o', 'x', '|', ')', '%', '8', '=', 'r', 'd', 'R', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'};
+
+        // Combine Passcode Salt Halves
+        for (int i = 0; i < 16; i++) {
+
+            passcodeSalt[16 + i] = passcodeSaltHalf[i];
+        }
+
+        // Use Hash from Session Cache if available
+        byte[] hashBytes = (rowId >= 0) ? keyCache.get(rowId, passcodeSalt, passcode) : null;
+
+        if (hashBytes == null) {
+
+            try {
+
+                // Generate Passcode Hash
+                hashBytes = scheme.kdf.derive(passcode, passcodeSalt, scheme.keyLength);
+
+                // Save Hash in Session Cache
+                if (rowId >= 0) {
+
+                    keyCache.put(rowId, passcodeSalt, passcode, hashBytes);
+                }
+            }
+            catch (NoSuchAlgorithmException noSuchAlgorithm) {
+
+                //Log.d("A", "No Such Alogrithm Exception!  Passcode hash not generated!");
+            }
+            catch (InvalidKeySpecException invalidKeySpec) {
+
+                //Log.d("A", "Invalid Key Spec Exception!  Passcode hash not generated!");
+            }
+        }
+
+        if (hashBytes == null) {
+
+            hashBytes = new byte[0];
+        }
+
+        return hashBytes;
+    }
+
+    // Performs actual comparison of entered passcode Hash with saved database passcode Hash (returns 0 if passcodes don't match, 1 if they do match, or 2 if no passcode is saved)
+    private int comparePasscodeHashes(long rowId, byte[] passcodeHash) {
+
+        byte[] savedPasscodeHash;
+        int isPasscodeCorrect = 0;
+
+        Cursor cursor = getRow(rowId);
+        cursor.moveToFirst();
+
+        savedPasscodeHash = getBytes(cursor, COL_PASSCODE_HASH);
+
+        if (savedPasscodeHash.length == 0) {
+
+            // No passcode is saved
+
+            isPasscodeCorrect = 2;
+        }
+        else if (MessageDigest.isEqual(passcodeHash, savedPasscodeHash)) {
+
+            // Passcodes match
+
+            isPasscodeCorrect = 1;
+
+            // If Bad Passcode Count is something other than zero, then reset
+            if (getBadPasscode(rowId)!=0) {
+
+                resetBadPasscode(rowId);
+            }
+        }
+        else {
+
+            // Passcodes don't match
+
+            isPasscodeCorrect = 0;
+
+            // Updates count of bad passcode entries in database for note locking
+            updateBadPasscode(rowId);
+        }
+
+        cursor.close();
+
+        return isPasscodeCorrect;
+    }
+
+    // Resets Bad Passcode Count to Zero after successful passcode entry (Lockout row is removed, Note row isn't touched)
+    private void resetBadPasscode(long rowId) {
+
+        String where = KEY_ROWID + "=" + rowId;
+        noteDb.delete(DATABASE_LOCKOUT_TABLE, where, null);
+    }
+
+    // Update Bad Passcode Count with number of bad attempts unitl 3 is reached and then store system time stamp for purposes of locking
+    private void updateBadPasscode(long rowId) {
+
+        long badPasscode = getBadPasscode(rowId);
+
+        if (badPasscode == 0) {
+
+            badPasscode = 1;
+        }
+        else if (badPasscode == 1) {
+
+            badPasscode = 2;
+        }
+        else if (badPasscode == 2) {
+
+            badPasscode = System.currentTimeMillis();
+        }
+        else if (!isNoteLocked(rowId)) {
+
+            // Lock has expired (isNoteLocked doesn't write), so counting starts over
+            badPasscode = 1;
+        }
+
+        // Setup Lockout Row Data
+        ContentValues lockoutValues = new ContentValues();
+        lockoutValues.put(KEY_ROWID, rowId);
+        lockoutValues.put(KEY_BAD_PASSCODE, badPasscode);
+
+        noteDb.insertWithOnConflict(DATABASE_LOCKOUT_TABLE, null, lockoutValues, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // Returns Bad Passcode Count (or lock time stamp) for note, zero if no lockout row exists
+    private long getBadPasscode(long rowId) {
+
+        String where = KEY_ROWID + "=" + rowId;
+        long badPasscode = 0;
+
+        Cursor cursor = noteDb.query(DATABASE_LOCKOUT_TABLE, LOCKOUT_KEYS,
+                where, null, null, null, null);
+
+        if (cursor != null) {
+
+            if (cursor.moveToFirst()) {
+
+                badPasscode = cursor.getLong(COL_LOCKOUT_BAD_PASSCODE);
+            }
+
+            cursor.close();
+        }
+
+        return badPasscode;
+    }
+
+    // Determines whether or not note has been locked due to bad passcode entries
+    boolean isNoteLocked(long rowId) {
+
+        long badPasscode = getBadPasscode(rowId);
+
+        // Note is not locked if passcode attempts are less than 3 or if proper time has elapsed ( 300,000 ms = 5 min )
+        if ( ( badPasscode >= 0 ) & (badPasscode <= 2) ) {
+
+            return false;
+        }
+        else if ( System.currentTimeMillis() >= (badPasscode + 300000)) {
+
+            // Expired lock row is left in place (Read only, so can run alongside a write); it is cleared or restarted by the next passcode entry
+            return false;
+        }
+
+        return true;
+    }
+
+    private byte[] getPasscodeSalt (long rowId) {
+
+        return getMetadataBytes(rowId, KEY_PASSCODE_SALT);
+    }
+
+    private byte[] getSalt (long rowId) {
+
+        return getMetadataBytes(rowId, KEY_SALT);
+    }
+
+    private byte[] getWrappedKey (long rowId) {
+
+        return getMetadataBytes(rowId, KEY_WRAPPED_KEY);
+    }
+
+    // Returns Encryption Scheme of note with its saved Iteration Count
+    private EncryptionScheme getEncryptionScheme (long rowId) {
+
+        Cursor cursor = noteDb.query(DATABASE_NOTE_TABLE, new String[] {KEY_SCHEME, KEY_ITERATIONS},
+                KEY_ROWID + "=" + rowId, null, null, null, null);
+        EncryptionScheme scheme = EncryptionScheme.forCode(0);
+
+        if (cursor.moveToFirst()) {
+
+            scheme = EncryptionScheme.forCode(cursor.getInt(0)).withIterationCount(cursor.getInt(1));
+        }
+
+        cursor.close();
+
+        return scheme;
+    }
+
+    // Returns Encryption Scheme of note row with its saved Iteration Count
+    private static EncryptionScheme getEncryptionScheme (Cursor cursor) {
+
+        return EncryptionScheme.forCode(cursor.getInt(COL_SCHEME)).withIterationCount(cursor.getInt(COL_ITERATIONS));
+    }
+
+    // Returns Scheme for new notes with Iteration Count calibrated for this device
+    private EncryptionScheme currentScheme() {
+
+        return EncryptionScheme.current().withIterationCount(KdfCalibration.getIterationCount(context));
+    }
+
+    // Note is encrypted if an IV is saved (authenticated notes have no saved passcode hash)
+    boolean isEncrypted (long rowId) {
+
+        Cursor cursor = getColumn(rowId, ENCRYPTED_SQL);
+        boolean encrypted = false;
+
+        if (cursor.moveToFirst()) {
+
+            encrypted = cursor.getInt(0) != 0;
+        }
+
+        cursor.close();
+
+        return encrypted;
+    }
+
+    // Returns raw bytes of a Salt, IV, or Passcode Hash column (Only that column & Storage Format are read)
+    private byte[] getMetadataBytes (long rowId, String key) {
+
+        Cursor cursor = noteDb.query(DATABASE_NOTE_TABLE, new String[] {key, KEY_FORMAT},
+                KEY_ROWID + "=" + rowId, null, null, null, null);
+        byte[] bytes = new byte[0];
+
+        if (cursor.moveToFirst()) {
+
+            bytes = decodeBytes(cursor, 0, cursor.getInt(1));
+        }
+
+        cursor.close();
+
+        return bytes;
+    }
+
+    // Returns raw bytes of Salt, IV, or Passcode Hash column of a full metadata row
+    private byte[] getBytes (Cursor cursor, int column) {
+
+        return decodeBytes(cursor, column, cursor.getInt(COL_FORMAT));
+    }
+
+    // Base-64 rows are decoded, BLOB & Chunked rows are read directly
+    private static byte[] decodeBytes (Cursor cursor, int column, int format) {
+
+        if (format != FORMAT_BASE64) {
+
+            return cursor.getBlob(column);
+        }
+
+        return Base64.decode(cursor.getString(column), 0);
+    }
+
+    // Reads saved Note Body from Body Table for metadata row of an older Storage Format (Base-64 rows only encoded encrypted bodies)
+    private byte[] getBody (Cursor cursor) {
+
+        int format = cursor.getInt(COL_FORMAT);
+        boolean encrypted = getBytes(cursor, COL_IV).length > 0;
+        byte[] body = new byte[0];
+
+        Cursor bodyCursor = noteDb.query(DATABASE_BODY_TABLE, BODY_KEYS,
+                KEY_ROWID + "=" + cursor.getLong(COL_ROWID), null, null, null, null);
+
+        if (bodyCursor.moveToFirst()) {
+
+            if ( (format == FORMAT_BLOB) || encrypted ) {
+
+                body = decodeBytes(bodyCursor, COL_BODY, format);
+            }
+            else {
+
+                body = bodyCursor.getString(COL_BODY).getBytes();
+            }
+        }
+
+        bodyCursor.close();
+
+        return body;
+    }
+
+    // Reads Note Body for metadata row, decrypting with key unless key is null (returns null if authentication fails)
+    // Chunked bodies are read & decrypted one chunk at a time, straight into one array (which is then inflated if the body was deflated)
+    private byte[] readBody (Cursor cursor, EncryptionScheme scheme, SecretKey key) {
+
+        int format = cursor.getInt(COL_FORMAT);
+
+        if (format < FORMAT_CHUNKED) {
+
+            return (key != null) ? decryptBody(scheme, getBody(cursor), key, getBytes(cursor, COL_IV)) : getBody(cursor);
+        }
+
+        String where = KEY_ROWID + "=" + cursor.getLong(COL_ROWID);
+        byte[] iv = getBytes(cursor, COL_IV);
+        int chunkCount = 0;
+        long savedLength = 0;
+
+        // Size body first, so no chunk is copied after decryption
+        Cursor sizeCursor = noteDb.query(DATABASE_CHUNK_TABLE, CHUNK_SIZE_KEYS, where, null, null, null, null);
+
+        if (sizeCursor.moveToFirst()) {
+
+            chunkCount = sizeCursor.getInt(0);
+            savedLength = sizeCursor.getLong(1);
+        }
+
+        sizeCursor.close();
+
+        byte[] body = new byte[(int) Math.max(0, savedLength - ((key != null) ? (long) chunkCount * ChunkedBodyCipher.TAG_BYTES : 0))];
+        int offset = 0;
+
+        Cursor chunkCursor = noteDb.query(DATABASE_CHUNK_TABLE, BODY_KEYS, where, null, null, null, KEY_CHUNK);
+
+        try {
+
+            if (chunkCursor.moveToFirst()) {
+
+                do {
+
+                    byte[] chunk = chunkCursor.getBlob(COL_BODY);
+                    int index = chunkCursor.getPosition();
+
+                    // Chunk position (not saved index) is authenticated, so a missing chunk fails decryption
+                    if (key != null) {
+
+                        offset += ChunkedBodyCipher.decryptChunk(scheme, key, iv, index, index == chunkCount - 1, chunk, body, offset);
+                    }
+                    else {
+
+                        System.arraycopy(chunk, 0, body, offset, chunk.length);
+                        offset += chunk.length;
+                    }
+                }
+                while (chunkCursor.moveToNext());
+            }
+        }
+        catch (AEADBadTagException badTag) {
+
+            // Authentication failed (incorrect passcode or modified note)
+            Arrays.fill(body, (byte) 0);
+            body = null;
+        }
+        catch (GeneralSecurityException generalSecurity) {
+
+            //Log.d("A", "General Security Exception!  Note Body not Decrypted!");
+
+            // Partly decrypted body mustn't be returned
+            Arrays.fill(body, (byte) 0);
+            body = null;
+        }
+        finally {
+
+            chunkCursor.close();
+        }
+
+        // Deflated bodies are inflated after all chunks are decrypted
+        if ( (format == FORMAT_DEFLATED) && (body != null) ) {
+
+            byte[] deflatedBody = body;
+
+            try {
+
+                body = BodyCompression.inflate(deflatedBody);
+            }
+            catch (DataFormatException dataFormat) {
+
+                //Log.d("A", "Data Format Exception!  Note Body not Inflated!");
+
+                body = null;
+            }
+
+            Arrays.fill(deflatedBody, (byte) 0);
+        }
+
+        return body;
+    }
+
+    String getName (long rowId) {
+
+        Cursor cursor = getColumn(rowId, KEY_NAME);
+        String name = "";
+
+        if (cursor.moveToFirst()) {
+
+            name = cursor.getString(0);
+        }
+
+        cursor.close();
+
+        return name;
+    }
+
+    // Returns single column of Note Metadata (Note Body is never read by small lookups)
+    private Cursor getColumn (long rowId, String key) {
+
+        return noteDb.query(DATABASE_NOTE_TABLE, new String[] {key},
+                KEY_ROWID + "=" + rowId, null, null, null, null);
+    }
+
+    // Changes Note Name in Database, unless another note has the name (returns false if name is in use)
+    boolean changeName (long rowId, String newName) {
+
+        String where = KEY_ROWID + "=" + rowId;
+        ContentValues updateValues = new ContentValues();
+
+        // Only Name Column is updated
+        updateValues.put(KEY_NAME, newName);
+
+        // Unique Name Index rejects the update in place of a scan of every name
+        if (noteDb.updateWithOnConflict(DATABASE_NOTE_TABLE, updateValues, where, null, SQLiteDatabase.CONFLICT_IGNORE) > 0) {
+
+            NoteChangeBus.post(rowId, NoteChangeBus.RENAMED);
+
+            return true;
         }
 
-        return passcodeSalt;
+        return false;
     }
 
-    private int getScheme (long rowId) {
+    // Adds/Changes Note Passcode (always with current scheme)
+    // Envelope notes on the current scheme only have their Data Key rewrapped with the new passcode, others are decrypted with old passcode (if necessary) and encrypted with new passcode
+    // Returns false if nothing was written (old passcode doesn't decrypt note, or note no longer exists)
+    boolean changePasscode (long rowId, char[] oldPasscode, char[] newPasscode) {
+
+        boolean changed = false;
+
+        // New passcode wasn't supplied
+        if (newPasscode==null) {
+
+            return false;
+        }
 
         Cursor cursor = getRow(rowId);
-        int scheme = 0;
 
-        if (cursor != null) {
+        if (cursor!=null) {
+
+            String where = KEY_ROWID + "=" + cursor.getInt(COL_ROWID);
+            EncryptionScheme scheme = currentScheme();
+            EncryptionScheme previousScheme = getEncryptionScheme(cursor);
+            boolean encrypted = getBytes(cursor, COL_IV).length > 0;
+
+            ContentValues updateValues = new ContentValues();
+
+            // Data Key is rewrapped with current Iteration Count, even if note was saved with a different one
+            if (encrypted & scheme.envelope & (previousScheme.code == scheme.code)) {
+
+                // Unwrap Data Key with previous passcode
+                SecretKey dataKey = getBodyKey(previousScheme, rowId, oldPasscode, getBytes(cursor, COL_SALT), getBytes(cursor, COL_WRAPPED_KEY));
+
+                if (dataKey != null) {
+
+                    // Generate New Salt
+                    byte[] salt = CryptoContext.get().randomBytes(16);
+
+                    // Old Passcode's cached Keys are no longer valid
+                    keyCache.evict(rowId);
+
+                    // Generate Key from New Passcode & rewrap Data Key (Note Body & IV are unchanged)
+                    byte[] verifierAndKey = deriveVerifierAndKey(scheme, rowId, newPasscode, salt);
+                    SecretKey key = new SecretKeySpec(verifierAndKey, VERIFIER_LENGTH, VERIFIER_LENGTH, scheme.keyType);
+                    byte[] dataKeyBytes = dataKey.getEncoded();
+
+                    updateValues.put(KEY_SALT, salt);
+                    updateValues.put(KEY_WRAPPED_KEY, wrapDataKey(scheme, key, dataKeyBytes));
+                    updateValues.put(KEY_ITERATIONS, scheme.iterationCount);
+
+                    Arrays.fill(dataKeyBytes, (byte) 0);
+                    Arrays.fill(verifierAndKey, (byte) 0);
+
+                    // Update Note Metadata only
+                    changed = noteDb.update(DATABASE_NOTE_TABLE, updateValues, where, null) > 0;
+
+                    if (changed) {
+
+                        NoteChangeBus.post(rowId, NoteChangeBus.UPDATED);
+                    }
+                }
+
+                cursor.close();
+
+                return changed;
+            }
+
+            byte[] body;
+
+            // If note was previously encrypted, then it must be decrypted with previous passcode & scheme
+            if (encrypted) {
+
+                // Generate Key from previous passcode and decrypt note (Unauthenticated schemes check the saved Passcode Hash first)
+                SecretKey decryptKey = ( (oldPasscode != null) && isPasscodeVerified(previousScheme, rowId, cursor, oldPasscode) ) ?
+                        getBodyKey(previousScheme, rowId, oldPasscode, getBytes(cursor, COL_SALT), getBytes(cursor, COL_WRAPPED_KEY)) : null;
+                body = (decryptKey != null) ? readBody(cursor, previousScheme, decryptKey) : null;
+            }
+            else {
+
+                body = readBody(cursor, previousScheme, null);
+            }
+
+            if (body == null) {
+
+                // Previous passcode is incorrect (or body couldn't be read)
+
+                cursor.close();
+
+                return false;
+            }
+
+            // Old Passcode's cached Keys are no longer valid
+            keyCache.evict(rowId);
+
+            // Generate New Salt, IV, Verifier & Key from New Passcode & Encrypt Note
+            byte[][] chunks = encryptWithNewSalt(scheme, rowId, newPasscode, body, updateValues);
+
+            // Setup Row Data (Name, Date & Bad Passcode Count are unchanged, always migrated to Current Encryption Scheme)
+            updateValues.put(KEY_SCHEME, scheme.code);
+            updateValues.put(KEY_PASSCODE_SALT, new byte[0]);
+
+            // Update Database
+            updateNoteAndBody(rowId, updateValues, chunks);
 
-            scheme = cursor.getInt(COL_SCHEME);
             cursor.close();
+
+            NoteChangeBus.post(rowId, NoteChangeBus.UPDATED);
+
+            changed = true;
         }
 
-        return scheme;
+        return changed;
     }
 
-    String getPasscodeHash (long rowId) {
+    // Returns number of notes not saved with current scheme & storage format
+    int countNotesToMigrate() {
 
-        Cursor cursor = getRow(rowId);
-        String passcodeHash = "";
+        Cursor cursor = noteDb.query(DATABASE_NOTE_TABLE, new String[] {"count(*)"},
+                getMigrationWhere(), null, null, null, null);
+        int count = 0;
 
         if (cursor.moveToFirst()) {
 
-            passcodeHash = cursor.getString(COL_PASSCODE_HASH);
-            cursor.close();
+            count = cursor.getInt(0);
         }
 
-        return passcodeHash;
+        cursor.close();
+
+        return count;
     }
 
-    String getName (long rowId) {
+    // Returns up to limit rowIds (after afterRowId, in rowId order) of notes not saved with current scheme & storage format
+    long[] getNotesToMigrate(long afterRowId, int limit) {
 
-        Cursor cursor = getRow(rowId);
-        String name = "";
+        Cursor cursor = noteDb.query(DATABASE_NOTE_TABLE, new String[] {KEY_ROWID},
+                "(" + getMigrationWhere() + ") and " + KEY_ROWID + ">" + afterRowId, null, null, null, KEY_ROWID, Integer.toString(limit));
+        long[] rowIds = new long[cursor.getCount()];
 
         if (cursor.moveToFirst()) {
 
-            name = cursor.getString(COL_NAME);
-            cursor.close();
+            do {
+
+                rowIds[cursor.getPosition()] = cursor.getLong(0);
+            }
+            while (cursor.moveToNext());
         }
 
-        return name;
+        cursor.close();
+
+        return rowIds;
     }
 
-    // Changes Note Name in Database
-    void changeName (long rowId, String newName) {
+    // True if note isn't saved with current scheme & storage format
+    boolean needsMigration(long rowId) {
 
-        Cursor cursor = getRow(rowId);
-        String where = KEY_ROWID + "=" + cursor.getInt(COL_ROWID);
-        ContentValues updateValues = new ContentValues();
+        Cursor cursor = noteDb.query(DATABASE_NOTE_TABLE, new String[] {KEY_ROWID},
+                "(" + getMigrationWhere() + ") and " + KEY_ROWID + "=" + rowId, null, null, null, null);
+        boolean needsMigration = cursor.getCount() > 0;
 
-        updateValues.put(KEY_NAME, newName);
-        updateValues.put(KEY_DATE, cursor.getLong(COL_DATE));
-        updateValues.put(KEY_BODY, cursor.getString(COL_BODY));
-        updateValues.put(KEY_SCHEME, cursor.getInt(COL_SCHEME));
-        updateValues.put(KEY_SALT, cursor.getString(COL_SALT));
-        updateValues.put(KEY_IV, cursor.getString(COL_IV));
-        updateValues.put(KEY_PASSCODE_HASH, cursor.getString(COL_PASSCODE_HASH));
-        updateValues.put(KEY_PASSCODE_SALT, cursor.getString(COL_PASSCODE_SALT));
-        updateValues.put(KEY_BAD_PASSCODE, cursor.getLong(COL_BAD_PASSCODE));
+        cursor.close();
+
+        return needsMigration;
+    }
 
-        noteDb.update(DATABASE_NOTE_TABLE, updateValues, where, null);
+    private String getMigrationWhere() {
 
-        cursor.close();
+        return KEY_SCHEME + "!=" + EncryptionScheme.current().code + " or " + KEY_FORMAT + "<" + FORMAT_CHUNKED;
     }
 
-    // Adds/Changes Note Passcode by decrypting note with old passcode (if necessary) and encrypting with new passcode & saving new passcode hash
-    void changePasscode (long rowId, char[] oldPasscode, char[] newPasscode) {
+    // Decrypts (if necessary) & re-encrypts note with current scheme without writing to database (Safe to run for several notes at once on different threads)
+    // Returns null if note can't be migrated (encrypted & passcode not supplied or incorrect, or note no longer exists)
+    PreparedUpdate prepareMigration(long rowId, char[] passcode) {
+
+        PreparedUpdate update = null;
 
         Cursor cursor = getRow(rowId);
 
-        if (cursor!=null) {
+        if ( (cursor != null) && (cursor.getCount() > 0) ) {
 
-            String where = KEY_ROWID + "=" + cursor.getInt(COL_ROWID);
-            int scheme = cursor.getInt(COL_SCHEME);
-            String salt;
-            String iv;
-            String encodedPasscodeHash = "";
-            String encodedPasscodeSaltHalf;
-            byte [] passcodeSaltHalf;
-
-            byte[] savedBody = cursor.getString(COL_BODY).getBytes();
-            byte[] body;
+            EncryptionScheme previousScheme = getEncryptionScheme(cursor);
+            byte[] body = null;
+            boolean encrypted = getBytes(cursor, COL_IV).length > 0;
 
-            ContentValues updateValues = new ContentValues();
+            if (encrypted & (passcode != null) && isPasscodeVerified(previousScheme, rowId, cursor, passcode)) {
 
-            // If passcode is supplied (Note is intended to be encrypted), then encrypt note body
-            if (newPasscode!=null) {
+                SecretKey key = getBodyKey(previousScheme, rowId, passcode, getBytes(cursor, COL_SALT), getBytes(cursor, COL_WRAPPED_KEY));
+                body = (key != null) ? readBody(cursor, previousScheme, key) : null;
+            }
+            else if (!encrypted) {
 
-                // Set Encryption Scheme Parameters
-                setSchemeParameters(scheme);
+                body = readBody(cursor, previousScheme, null);
+            }
 
-                String savedPasscodeHash = cursor.getString(COL_PASSCODE_HASH);
+            if (body != null) {
 
-                // If a Passcode Hash is saved, then note was previously encrypted, & can use saved iv, salt, & passcode salt, otherwise generate new ones
-                if (!savedPasscodeHash.equals("")) {
+                EncryptionScheme scheme = currentScheme();
+                update = new PreparedUpdate(rowId, cursor.getLong(COL_DATE), previousScheme.code, cursor.getBlob(COL_SALT));
 
-                    // Get Saved IV, Salt, & Passcode Salt
-                    iv = cursor.getString(COL_IV);
-                    salt = cursor.getString(COL_SALT);
-                    encodedPasscodeSaltHalf = cursor.getString(COL_PASSCODE_SALT);
-                    passcodeSaltHalf = Base64.decode(encodedPasscodeSaltHalf, 0);
+                if (encrypted) {
 
-                    // Generate Key from previous passcode and decrypt note
-                    SecretKey decryptKey = generateKeyFromPasscode(oldPasscode, salt.getBytes());
-                    body = decryptBody(savedBody, decryptKey, iv.getBytes());
+                    update.chunks = encryptWithNewSalt(scheme, rowId, passcode, body, update.metadataValues);
+                    Arrays.fill(body, (byte) 0);
                 }
                 else {
 
-                    // Generate New IV & Salt
-                    SecureRandom random = new SecureRandom();
-                    byte[] saltBytes = new byte[16];
-                    random.nextBytes(saltBytes);
-                    byte[] ivBytes = generateNewIv();
-                    salt = Base64.encodeToString(saltBytes, 0);
-                    iv = Base64.encodeToString(ivBytes, 0);
-
-                    // Generate passcode salt half
-                    byte[] newPasscodeSaltHalf = new byte[16];
-                    random.nextBytes(newPasscodeSaltHalf);
-                    encodedPasscodeSaltHalf = Base64.encodeToString(newPasscodeSaltHalf, 0);
-                    passcodeSaltHalf = newPasscodeSaltHalf;
-
-                    body = savedBody;
+                    putUnencryptedValues(update.metadataValues);
+                    update.chunks = chunkBody(scheme, body, null, null, update.metadataValues);
                 }
 
-                // Generate Key from New Passcode & Encrypt Note
-                SecretKey key = generateKeyFromPasscode(newPasscode, salt.getBytes());
-                byte[] encryptedBody = encryptBody(body, key, iv.getBytes());
+                update.metadataValues.put(KEY_SCHEME, scheme.code);
+                update.metadataValues.put(KEY_PASSCODE_SALT, new byte[0]);
+            }
+        }
 
-                // Hash Passcode for saving
-                try {
+        if (cursor != null) {
 
-                    // 1st half (16 bytes) of passcode salt is hardcoded, 2nd half is generated with PRNG and stored in Note DB & added at runtime (salt length should be same as output)
-                    byte[] passcodeSalt = new byte[]{'1', 'X', '2', 'h', '^', '+', 'o', 'x', '|', ')', '%', '8', '=', 'r', 'd', 'R', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'};
+            cursor.close();
+        }
 
-                    // Combine Passcode Salt Halves
-                    for (int i = 0; i < 16; i++) {
+        return update;
+    }
 
-                        passcodeSalt[16 + i] = passcodeSaltHalf[i];
-                    }
+    // Checks passcode against saved Passcode Hash of unauthenticated schemes without counting bad entries (Authenticated schemes are verified by decryption, so always pass)
+    // CBC decryption with a wrong key can still pass the padding check, so a note mustn't be re-encrypted from a body whose passcode wasn't verified
+    private boolean isPasscodeVerified(EncryptionScheme scheme, long rowId, Cursor cursor, char[] passcode) {
 
-                    // Hash New Passcode
-                    SecretKeyFactory hashKeyFactory = SecretKeyFactory.getInstance(passcodeHashAlgorithm);
-                    KeySpec hashKeySpec = new PBEKeySpec(newPasscode, passcodeSalt, iterationCount, keyLength);
-                    byte[] hashBytes = hashKeyFactory.generateSecret(hashKeySpec).getEncoded();
-                    encodedPasscodeHash = Base64.encodeToString(hashBytes, 0);
-                }
-                catch (NoSuchAlgorithmException noSuchAlgorithm) {
+        if (scheme.authenticatedEncryption) {
 
-                    //Log.d("A", "No Such Alogrithm Exception!  Passcode hash not generated!");
+            return true;
+        }
 
-                }
-                catch (InvalidKeySpecException invalidKeySpec) {
+        byte[] passcodeHash;
 
-                    //Log.d("A", "Invalid Key Spec Exception!  Passcode hash not generated!");
+        if (scheme.singlePassKdf) {
+
+            byte[] verifierAndKey = deriveVerifierAndKey(scheme, rowId, passcode, getBytes(cursor, COL_SALT));
+            passcodeHash = Arrays.copyOf(verifierAndKey, VERIFIER_LENGTH);
+            Arrays.fill(verifierAndKey, (byte) 0);
+        }
+        else {
+
+            passcodeHash = hashPasscode(scheme, rowId, passcode, getBytes(cursor, COL_PASSCODE_SALT));
+        }
+
+        byte[] savedPasscodeHash = getBytes(cursor, COL_PASSCODE_HASH);
+        boolean isPasscodeCorrect = (savedPasscodeHash.length > 0) && MessageDigest.isEqual(passcodeHash, savedPasscodeHash);
+
+        Arrays.fill(passcodeHash, (byte) 0);
+
+        return isPasscodeCorrect;
+    }
+
+    // Writes prepared migrations or locks in one transaction & returns number written (Notes saved, re-keyed or deleted since preparation are skipped & left uncommitted)
+    // Salt changes on every re-key, including a Data Key rewrap which leaves Date & Scheme alone.  It's compared as hex of the saved bytes, so text salts of older formats match too.
+    // Posts no change events, as a migration doesn't change anything a screen shows
+    int commitPreparedUpdates(List<PreparedUpdate> updates) {
+
+        int committed = 0;
+
+        noteDb.beginTransactionNonExclusive();
+
+        try {
+
+            for (PreparedUpdate update : updates) {
+
+                String unchangedWhere = KEY_ROWID + "=" + update.rowId + " and " + KEY_DATE + "=" + update.date + " and " + KEY_SCHEME + "=" + update.scheme
+                        + " and hex(" + KEY_SALT + ")='" + toHex(update.salt) + "'";
+
+                if (noteDb.update(DATABASE_NOTE_TABLE, update.metadataValues, unchangedWhere, null) > 0) {
+
+                    writeChunks(update.rowId, update.chunks);
+
+                    update.committed = true;
+                    committed++;
                 }
+            }
+
+            noteDb.setTransactionSuccessful();
+        }
+        finally {
+
+            noteDb.endTransaction();
+        }
+
+        return committed;
+    }
+
+    // Note Metadata & Body prepared off the database thread, with the Date, Scheme & saved Salt it was prepared from
+    static final class PreparedUpdate {
+
+        final long rowId;
+        final long date;
+        final int scheme;
+        final byte[] salt;
+        final ContentValues metadataValues = new ContentValues();
+        byte[][] chunks;
+        boolean committed;                                                 // Set when written by commitPreparedUpdates
+
+        PreparedUpdate(long rowId, long date, int scheme, byte[] salt) {
+
+            this.rowId = rowId;
+            this.date = date;
+            this.scheme = scheme;
+            this.salt = salt;
+        }
+    }
+
+    // Returns bytes as upper case hex, as SQLite's hex() function does
+    private static String toHex(byte[] bytes) {
+
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+
+            hex.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)));
+            hex.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+        }
+
+        return hex.toString();
+    }
+
+    // Updates Note Metadata & Body together
+    private void updateNoteAndBody(long rowId, ContentValues metadataValues, byte[][] chunks) {
+
+        noteDb.beginTransactionNonExclusive();
+
+        try {
+
+            noteDb.update(DATABASE_NOTE_TABLE, metadataValues, KEY_ROWID + "=" + rowId, null);
+            writeChunks(rowId, chunks);
+
+            noteDb.setTransactionSuccessful();
+        }
+        finally {
+
+            noteDb.endTransaction();
+        }
+    }
+
+    // Replaces Note Body with chunks, removing any Body Table row of an older Storage Format (Called within a transaction)
+    private void writeChunks(long rowId, byte[][] chunks) {
+
+        String where = KEY_ROWID + "=" + rowId;
+        ContentValues chunkValues = new ContentValues();
+
+        noteDb.delete(DATABASE_BODY_TABLE, where, null);
+        noteDb.delete(DATABASE_CHUNK_TABLE, where, null);
+
+        for (int i = 0; i < chunks.length; i++) {
+
+            chunkValues.put(KEY_ROWID, rowId);
+            chunkValues.put(KEY_CHUNK, i);
+            chunkValues.put(KEY_BODY, chunks[i]);
+
+            noteDb.insert(DATABASE_CHUNK_TABLE, null, chunkValues);
+        }
+    }
+
+    // Deletes Note Metadata, Body, Chunk & Lockout rows together
+    void deleteRow(long keyRowId) {
+
+        deleteRows(new long[] {keyRowId});
+    }
+
+    // Deletes a selection of Notes in one transaction & returns number deleted
+    int deleteRows(long[] rowIds) {
+
+        String rowIdWhere = getRowIdWhere(rowIds);
+        long[] deletedRowIds;
+
+        noteDb.beginTransactionNonExclusive();
+
+        try {
+
+            // Row Ids still saved are read in the same transaction, so events & evictions are only for notes actually deleted
+            deletedRowIds = getRowIds(rowIdWhere);
+
+            deleteWhere(rowIdWhere);
+
+            noteDb.setTransactionSuccessful();
+        }
+        finally {
+
+            noteDb.endTransaction();
+        }
+
+        for (long rowId : deletedRowIds) {
+
+            keyCache.evict(rowId);
+            NoteChangeBus.post(rowId, NoteChangeBus.DELETED);
+        }
+
+        return deletedRowIds.length;
+    }
+
+    // Deletes All Unencrypted Notes from Database in one transaction & returns number deleted (No passcode keys are cached for them)
+    int deleteAllUnencrypted() {
+
+        String unencryptedWhere = "length(" + KEY_IV + ") = 0";
+        long[] rowIds;
+
+        noteDb.beginTransactionNonExclusive();
+
+        try {
+
+            // Row Ids are read in the same transaction, only for change events
+            rowIds = getRowIds(unencryptedWhere);
+
+            deleteWhere(KEY_ROWID + " in (select " + KEY_ROWID + " from " + DATABASE_NOTE_TABLE + " where " + unencryptedWhere + ")");
+
+            noteDb.setTransactionSuccessful();
+        }
+        finally {
+
+            noteDb.endTransaction();
+        }
+
+        for (long rowId : rowIds) {
+
+            NoteChangeBus.post(rowId, NoteChangeBus.DELETED);
+        }
+
+        return rowIds.length;
+    }
+
+    // Deletes Note Metadata, Body, Chunk & Lockout rows of every note matching a Row Id condition, one statement per table (Called within a transaction)
+    private int deleteWhere(String rowIdWhere) {
+
+        // Note Table is last, as the condition may select from it
+        noteDb.delete(DATABASE_BODY_TABLE, rowIdWhere, null);
+        noteDb.delete(DATABASE_CHUNK_TABLE, rowIdWhere, null);
+        noteDb.delete(DATABASE_LOCKOUT_TABLE, rowIdWhere, null);
 
-                updateValues.put(KEY_BODY, new String(encryptedBody));
+        return noteDb.delete(DATABASE_NOTE_TABLE, rowIdWhere, null);
+    }
+
+    private long[] getRowIds(String where) {
+
+        Cursor cursor = noteDb.query(DATABASE_NOTE_TABLE, ROWID_KEYS, where, null, null, null, null);
+        long[] rowIds = new long[cursor.getCount()];
+
+        while (cursor.moveToNext()) {
+
+            rowIds[cursor.getPosition()] = cursor.getLong(0);
+        }
+
+        cursor.close();
+
+        return rowIds;
+    }
+
+    // Adds a passcode to the unencrypted notes of a selection & returns number locked (Notes are encrypted first, then written in one transaction)
+    int lockNotes(long[] rowIds, char[] passcode) {
+
+        List<PreparedUpdate> updates = new ArrayList<>();
+
+        for (long rowId : rowIds) {
+
+            PreparedUpdate update = prepareLock(rowId, passcode);
+
+            if (update != null) {
+
+                updates.add(update);
             }
-            else {
+        }
 
-                // New passcode wasn't supplied
+        int locked = commitPreparedUpdates(updates);
 
-                cursor.close();
+        // Only notes actually written changed (others were saved or deleted meanwhile & have posted their own events)
+        for (PreparedUpdate update : updates) {
+
+            if (update.committed) {
 
-                return;
+                NoteChangeBus.post(update.rowId, NoteChangeBus.UPDATED);
             }
+        }
+
+        return locked;
+    }
 
-            // Setup Row Data
-            updateValues.put(KEY_NAME, cursor.getString(COL_NAME));
-            updateValues.put(KEY_DATE, cursor.getLong(COL_DATE));
-            updateValues.put(KEY_SCHEME, scheme);
-            updateValues.put(KEY_SALT, salt);
-            updateValues.put(KEY_IV, iv);
-            updateValues.put(KEY_PASSCODE_HASH, encodedPasscodeHash);
-            updateValues.put(KEY_PASSCODE_SALT, encodedPasscodeSaltHalf);
-            updateValues.put(KEY_BAD_PASSCODE, cursor.getLong(COL_BAD_PASSCODE));
+    // Encrypts unencrypted note with passcode (current scheme) without writing to database
+    // Returns null if note is already encrypted or no longer exists
+    private PreparedUpdate prepareLock(long rowId, char[] passcode) {
 
-            // Update Database
-            noteDb.update(DATABASE_NOTE_TABLE, updateValues, where, null);
+        PreparedUpdate update = null;
+
+        Cursor cursor = getRow(rowId);
+
+        if ( (cursor != null) && (cursor.getCount() > 0) && (getBytes(cursor, COL_IV).length == 0) ) {
+
+            EncryptionScheme previousScheme = getEncryptionScheme(cursor);
+            byte[] body = readBody(cursor, previousScheme, null);
+
+            if (body != null) {
+
+                EncryptionScheme scheme = currentScheme();
+                update = new PreparedUpdate(rowId, cursor.getLong(COL_DATE), previousScheme.code, cursor.getBlob(COL_SALT));
+
+                update.chunks = encryptWithNewSalt(scheme, rowId, passcode, body, update.metadataValues);
+                update.metadataValues.put(KEY_SCHEME, scheme.code);
+                update.metadataValues.put(KEY_PASSCODE_SALT, new byte[0]);
+            }
+        }
+
+        if (cursor != null) {
 
             cursor.close();
         }
+
+        return update;
     }
 
-    void deleteRow(long keyRowId) {
+    // Returns Names & Bodies of the unencrypted notes of a selection, read in one transaction (Encrypted notes are left out, as they need their own passcodes)
+    Map<String, byte[]> exportNotes(long[] rowIds) {
 
-        String where = KEY_ROWID + "=" + keyRowId;
-        noteDb.delete(DATABASE_NOTE_TABLE, where, null);
-    }
+        Map<String, byte[]> notes = new LinkedHashMap<>();
+
+        noteDb.beginTransactionNonExclusive();
 
-    // Deletes All Unencrypted Notes from Database
-    void deleteAllUnencrypted() {
+        try {
 
-        Cursor deleteCursor = getAllRows();
+            Cursor cursor = noteDb.query(DATABASE_NOTE_TABLE, ALL_NOTETABLE_KEYS,
+                    getRowIdWhere(rowIds) + " and length(" + KEY_IV + ") = 0", null, null, null, KEY_NAME);
 
-        if (deleteCursor.moveToFirst()) {
+            while (cursor.moveToNext()) {
 
-            do {
+                byte[] body = readBody(cursor, getEncryptionScheme(cursor), null);
 
-                // If note is unencrypted, then delete
-                if (deleteCursor.getString(COL_PASSCODE_HASH).equals("")) {
+                if (body != null) {
 
-                    deleteRow(deleteCursor.getLong(COL_ROWID));
+                    notes.put(cursor.getString(COL_NAME), body);
                 }
             }
-            while (deleteCursor.moveToNext());
 
-            deleteCursor.close();
+            cursor.close();
+
+            noteDb.setTransactionSuccessful();
         }
+        finally {
+
+            noteDb.endTransaction();
+        }
+
+        return notes;
     }
 
-    private Cursor getAllRows() {
+    private static String getRowIdWhere(long[] rowIds) {
 
-        Cursor c = 	noteDb.query(true, DATABASE_NOTE_TABLE, ALL_NOTETABLE_KEYS,
-                null, null, null, null, null, null);
+        StringBuilder where = new StringBuilder(KEY_ROWID).append(" in (");
 
-        if (c != null) {
+        for (int i = 0; i < rowIds.length; i++) {
 
-            c.moveToFirst();
+            where.append((i == 0) ? "" : ",").append(rowIds[i]);
         }
 
-        return c;
+        return where.append(')').toString();
     }
 
-    // Method to Reurn all Names in the Note Table
-    Cursor getAllNames() {
+    // Checks if a Note has the Name (one lookup in the Unique Name Index)
+    boolean nameExists(String name) {
 
-        Cursor c = 	noteDb.query(true, DATABASE_NOTE_TABLE, NAME_KEYS,
-                null, null, null, null, null, null);
+        Cursor c = noteDb.query(DATABASE_NOTE_TABLE, ROWID_KEYS, KEY_NAME + " = ?",
+                new String[] {name}, null, null, null, "1");
 
-        if (c != null) {
+        try {
 
-            c.moveToFirst();
+            return c.moveToFirst();
         }
+        finally {
 
-        return c;
+            c.close();
+        }
     }
 
-    // Method to Reurn all data for Main Note List
+    // Method to Return all data for Main Note List (rowId, name, date, & encrypted flag), most recent first
     Cursor getAllNotesForMainList() {
 
-        Cursor c = 	noteDb.query(true, DATABASE_NOTE_TABLE, MAIN_LIST_KEYS,
-                null, null, null, null, null, null);
+        Cursor c = 	noteDb.query(DATABASE_NOTE_TABLE, MAIN_LIST_KEYS,
+                null, null, null, null, KEY_DATE + " DESC");
 
         if (c != null) {
 
@@ -1058,6 +2095,14 @@ class NoteDBAdapter {
         return c;
     }
 
+    // Method to Return Main List data of a selection of notes (rowId, name, date, & encrypted flag), most recent first (Deleted notes aren't returned)
+    Cursor getNotesForMainList(long[] rowIds) {
+
+        return noteDb.query(DATABASE_NOTE_TABLE, MAIN_LIST_KEYS,
+                getRowIdWhere(rowIds), null, null, null, KEY_DATE + " DESC");
+    }
+
+    // Returns Note Metadata row (Note Body is only read by getBody)
     Cursor getRow(long keyRowId) {
 
         String where = KEY_ROWID + "=" + keyRowId;
@@ -1072,28 +2117,39 @@ class NoteDBAdapter {
         return c;
     }
 
+    // Creates current version of every table & index in an empty database
+    static void createTables(SQLiteDatabase _db) {
+
+        _db.execSQL(DATABASE_CREATE_NOTE_TABLE_SQL);
+        _db.execSQL(DATABASE_CREATE_NOTE_DATE_INDEX_SQL);
+        _db.execSQL(DATABASE_CREATE_NOTE_NAME_INDEX_SQL);
+        _db.execSQL(DATABASE_CREATE_LOCKOUT_TABLE_SQL);
+        _db.execSQL(DATABASE_CREATE_BODY_TABLE_SQL);
+        _db.execSQL(DATABASE_CREATE_CHUNK_TABLE_SQL);
+    }
+
     // ***** LOW-LEVEL DATABASE ACCESS FOR CREATION AND UPGRADING ******
     private static class NoteDatabaseHelper extends SQLiteOpenHelper {
 
-        NoteDatabaseHelper(Context context) {
+        NoteDatabaseHelper(Context context, String databaseName) {
 
-            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            super(context, databaseName, null, DATABASE_VERSION);
+
+            // Write-Ahead Logging lets reads (main list, name & lock checks) use pooled connections while a write transaction is open
+            setWriteAheadLoggingEnabled(true);
         }
 
         @Override
         public void onCreate(SQLiteDatabase _db) {
 
-            _db.execSQL(DATABASE_CREATE_NOTE_TABLE_SQL);
+            createTables(_db);
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase _db, int oldVersion, int newVersion) {
 
-            // Delete Old Database
-            _db.execSQL("DROP TABLE IF EXISTS " + DATABASE_NOTE_TABLE);
-
-            // Recreate new database:
-            onCreate(_db);
+            // Upgrade existing database in place so saved notes are kept
+            DatabaseMigration.migrate(_db, MIGRATIONS, oldVersion, newVersion);
         }
     }
 }
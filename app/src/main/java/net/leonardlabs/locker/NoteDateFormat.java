@@ -0,0 +1,111 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// Thread Confined Date & Time Label Formatters for Note Rows, so binding a row allocates no formatter (SimpleDateFormat isn't thread-safe, so each thread has its own)
+// Date Label of the last day formatted is kept, as rows are in date order & neighbouring notes are often saved the same day
+// Formatters are rebuilt when the default Time Zone or Locale changes (the system updates both in a running process), so labels never go stale
+final class NoteDateFormat {
+
+    private static final ThreadLocal<NoteDateFormat> FORMATS = new ThreadLocal<>();
+
+    private final TimeZone timeZone;
+    private final Locale locale;
+    private final SimpleDateFormat dateFormat;
+    private final SimpleDateFormat timeFormat;
+    private final Calendar calendar;
+    private final Date date = new Date();
+
+    private long dayStart = Long.MAX_VALUE;                 // Day of last Date Label (local time, end exclusive)
+    private long dayEnd = Long.MIN_VALUE;
+    private String dateLabel;
+
+    private NoteDateFormat(TimeZone timeZone, Locale locale) {
+
+        this.timeZone = timeZone;
+        this.locale = locale;
+
+        dateFormat = new SimpleDateFormat("M/d/yy", locale);
+        dateFormat.setTimeZone(timeZone);
+        timeFormat = new SimpleDateFormat("h:mm a", locale);
+        timeFormat.setTimeZone(timeZone);
+        calendar = Calendar.getInstance(timeZone, locale);
+    }
+
+    // Returns Formatters of the calling thread for the current Time Zone & Locale
+    static NoteDateFormat get() {
+
+        NoteDateFormat format = FORMATS.get();
+        TimeZone timeZone = TimeZone.getDefault();
+        Locale locale = Locale.getDefault();
+
+        if ( (format == null) || !format.timeZone.equals(timeZone) || !format.locale.equals(locale) ) {
+
+            format = new NoteDateFormat(timeZone, locale);
+            FORMATS.set(format);
+        }
+
+        return format;
+    }
+
+    // Date Label, e.g. 12/30/17
+    String formatDate(long millis) {
+
+        if ( (millis < dayStart) | (millis >= dayEnd) ) {
+
+            // Find bounds of note's local day
+            calendar.setTimeInMillis(millis);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            dayStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            dayEnd = calendar.getTimeInMillis();
+
+            date.setTime(millis);
+            dateLabel = dateFormat.format(date);
+        }
+
+        return dateLabel;
+    }
+
+    // Time Label, e.g. 12:30 PM
+    String formatTime(long millis) {
+
+        date.setTime(millis);
+
+        return timeFormat.format(date);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+// Main Note List Adapter, showing the latest page published by the List Loader Thread
+// Rows have stable Row Id IDs, & a page is applied as the diff from the page shown (no full reload, so scroll position is kept)
+final class NoteListAdapter extends RecyclerView.Adapter<NoteListAdapter.RowViewHolder> {
+
+    private final NoteClickListener noteClickListener;
+    private NoteListSnapshot snapshot = new NoteListSnapshot();
+
+    // Note Row Click & Long Click, with the note's Row Id (& whether it's encrypted, from the displayed row)
+    interface NoteClickListener {
+
+        void onNoteClick(long rowId);
+
+        void onNoteLongClick(View row, long rowId, boolean encrypted);
+    }
+
+    // Page published by List Loader Thread, with its diff from the page published before it
+    static final class Update {
+
+        final NoteListSnapshot previous;
+        final NoteListSnapshot page;
+        final DiffUtil.DiffResult diff;
+
+        Update(NoteListSnapshot previous, NoteListSnapshot page) {
+
+            this.previous = previous;
+            this.page = page;
+            this.diff = page.diffFrom(previous);
+        }
+    }
+
+    NoteListAdapter(NoteClickListener noteClickListener) {
+
+        this.noteClickListener = noteClickListener;
+
+        setHasStableIds(true);
+    }
+
+    // Replaces displayed rows with page (UI thread only)
+    // Diff is only valid from the page it was computed against, otherwise (e.g. Activity was recreated) every row is rebound
+    void apply(Update update) {
+
+        boolean diffApplies = (update.previous == snapshot);
+
+        snapshot = update.page;
+
+        if (diffApplies) {
+
+            update.diff.dispatchUpdatesTo(this);
+        }
+        else {
+
+            notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+
+        return snapshot.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+
+        return snapshot.getRowId(position);
+    }
+
+    @Override
+    public RowViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+
+        View row = LayoutInflater.from(parent.getContext()).inflate(R.layout.main_note_row, parent, false);
+
+        return new RowViewHolder(row);
+    }
+
+    @Override
+    public void onBindViewHolder(RowViewHolder holder, int position) {
+
+        // Labels are formatted only for rows bound on screen
+        long date = snapshot.getDate(position);
+        NoteDateFormat format = NoteDateFormat.get();
+
+        holder.name.setText(snapshot.getName(position));
+        holder.date.setText(format.formatDate(date));
+        holder.time.setText(format.formatTime(date));
+
+        // Lock Marker is the row layout's image, shown or hidden (never decoded on bind)
+        holder.encryptedMarker.setVisibility(snapshot.isEncrypted(position) ? View.VISIBLE : View.INVISIBLE);
+    }
+
+    final class RowViewHolder extends RecyclerView.ViewHolder {
+
+        final TextView name;
+        final TextView date;
+        final TextView time;
+        final ImageView encryptedMarker;
+
+        RowViewHolder(View row) {
+
+            super(row);
+
+            name = row.findViewById(R.id.mainTextViewName);
+            date = row.findViewById(R.id.mainTextViewDate);
+            time = row.findViewById(R.id.mainTextViewTime);
+            encryptedMarker = row.findViewById(R.id.mainImageViewEncryptedMarker);
+
+            // Stable ID is the note's Row Id (ignored while row is being removed)
+            row.setOnClickListener(new View.OnClickListener() {
+
+                @Override
+                public void onClick(View view) {
+
+                    if (getAdapterPosition() != RecyclerView.NO_POSITION) {
+
+                        noteClickListener.onNoteClick(getItemId());
+                    }
+                }
+            });
+
+            row.setOnLongClickListener(new View.OnLongClickListener() {
+
+                @Override
+                public boolean onLongClick(View view) {
+
+                    int position = getAdapterPosition();
+
+                    if (position != RecyclerView.NO_POSITION) {
+
+                        noteClickListener.onNoteLongClick(view, getItemId(), snapshot.isEncrypted(position));
+                    }
+
+                    return true;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import android.database.Cursor;
+import android.support.v7.util.DiffUtil;
+
+import java.util.Set;
+
+// Rows of the Main Note List (most recent first) as read by the List Loader Thread, handed to the UI thread in pages.
+// Each page shares one set of row arrays; rows below a page's size are never written after it's published, so a page can be read on the UI thread without copying or locking.
+// Rows keep only Row Id, Name, Date & packed flags; Date & Time Labels are formatted when a row is bound on screen (NoteDateFormat).
+final class NoteListSnapshot {
+
+    static final int FIRST_PAGE_SIZE = 30;                  // About a screenful of rows, published before the rest are read
+
+    // Row Flags
+    private static final byte FLAG_ENCRYPTED = 1;
+
+    final int total;                                        // Notes in database (rows once every page is published)
+
+    private final int size;
+    private final long[] rowIds;
+    private final String[] names;
+    private final long[] dates;                             // Sort order of rows
+    private final byte[] flags;
+
+    // Empty list for a database without notes
+    NoteListSnapshot() {
+
+        this(new Builder(0));
+    }
+
+    // Page of the rows added to builder so far
+    private NoteListSnapshot(Builder builder) {
+
+        this.total = builder.rowIds.length;
+        this.size = builder.size;
+        this.rowIds = builder.rowIds;
+        this.names = builder.names;
+        this.dates = builder.dates;
+        this.flags = builder.flags;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    // True once every note is in the page
+    boolean isComplete() {
+
+        return size == total;
+    }
+
+    long getRowId(int position) {
+
+        return rowIds[position];
+    }
+
+    String getName(int position) {
+
+        return names[position];
+    }
+
+    long getDate(int position) {
+
+        return dates[position];
+    }
+
+    boolean isEncrypted(int position) {
+
+        return (flags[position] & FLAG_ENCRYPTED) != 0;
+    }
+
+    // Returns complete list with changed notes' rows replaced by their re-read rows (most recent first), so only changed notes are read from database
+    // Changed notes without a re-read row were deleted
+    NoteListSnapshot patch(Set<Long> changedRowIds, NoteListSnapshot changedRows) {
+
+        int keptRows = 0;
+
+        for (int i = 0; i < size; i++) {
+
+            if (!changedRowIds.contains(rowIds[i])) {
+
+                keptRows++;
+            }
+        }
+
+        Builder builder = new Builder(keptRows + changedRows.size);
+        int changedPosition = 0;
+
+        for (int i = 0; i < size; i++) {
+
+            if (!changedRowIds.contains(rowIds[i])) {
+
+                // Changed rows more recent than kept row go first
+                while ( (changedPosition < changedRows.size) && (changedRows.dates[changedPosition] > dates[i]) ) {
+
+                    builder.addRow(changedRows, changedPosition++);
+                }
+
+                builder.addRow(this, i);
+            }
+        }
+
+        while (changedPosition < changedRows.size) {
+
+            builder.addRow(changedRows, changedPosition++);
+        }
+
+        return builder.build();
+    }
+
+    // Computes inserts, moves, removes & changes which turn previous page into this one (Run on List Loader Thread, as it reads every row)
+    DiffUtil.DiffResult diffFrom(final NoteListSnapshot previous) {
+
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+
+            @Override
+            public int getOldListSize() {
+
+                return previous.size;
+            }
+
+            @Override
+            public int getNewListSize() {
+
+                return size;
+            }
+
+            // Same note if Row Id is the same (Row Ids are never reused)
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+
+                return previous.rowIds[oldPosition] == rowIds[newPosition];
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+
+                return (previous.flags[oldPosition] == flags[newPosition])
+                        && (previous.dates[oldPosition] == dates[newPosition])
+                        && previous.names[oldPosition].equals(names[newPosition]);
+            }
+        }, true);
+    }
+
+    // Appends rows to one set of arrays sized for every row, publishing pages of the rows added so far
+    static final class Builder {
+
+        private final long[] rowIds;
+        private final String[] names;
+        private final long[] dates;
+        private final byte[] flags;
+        private int size;
+
+        Builder(int rows) {
+
+            rowIds = new long[rows];
+            names = new String[rows];
+            dates = new long[rows];
+            flags = new byte[rows];
+        }
+
+        int size() {
+
+            return size;
+        }
+
+        // Adds Main List Cursor row (rowId, name, date, & encrypted flag)
+        void addRow(Cursor cursor) {
+
+            rowIds[size] = cursor.getLong(NoteDBAdapter.COL_ROWID);
+            names[size] = cursor.getString(NoteDBAdapter.COL_NAME);
+            dates[size] = cursor.getLong(NoteDBAdapter.COL_DATE);
+            flags[size] = (cursor.getInt(NoteDBAdapter.COL_ENCRYPTED) != 0) ? FLAG_ENCRYPTED : 0;
+            size++;
+        }
+
+        private void addRow(NoteListSnapshot snapshot, int position) {
+
+            rowIds[size] = snapshot.rowIds[position];
+            names[size] = snapshot.names[position];
+            dates[size] = snapshot.dates[position];
+            flags[size] = snapshot.flags[position];
+            size++;
+        }
+
+        NoteListSnapshot build() {
+
+            return new NoteListSnapshot(this);
+        }
+    }
+}
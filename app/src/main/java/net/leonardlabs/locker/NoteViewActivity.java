@@ -50,7 +50,9 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
 public class NoteViewActivity extends BaseActivity {
 
@@ -221,7 +223,7 @@ public class NoteViewActivity extends BaseActivity {
             public void onClick(View view) {
 
                 // If database is in use, or during graphic effect, do nothing.
-                if (!duringDecryptingGraphicalEffect & ! duringEncryptingGraphicalEffect & !dbInUse) {
+                if (!duringDecryptingGraphicalEffect & ! duringEncryptingGraphicalEffect & !DatabaseExecutor.isBusy()) {
 
                     // Save(Update) Record
 
@@ -410,7 +412,7 @@ public class NoteViewActivity extends BaseActivity {
             if (( !recordBody.equals(bodyString) ) & (bodyString.length() > 0 ) ) {
 
                 // If database is in use, do nothing.
-                if (!dbInUse) {
+                if (!DatabaseExecutor.isBusy()) {
 
                     // Setup Save Confirmation Prompt Alert Dialog
                     LayoutInflater layoutInflater = LayoutInflater.from(this);
@@ -478,13 +480,23 @@ public class NoteViewActivity extends BaseActivity {
         // For Note View Activity, refresh display consists of simply changing the toolbar title note name.
 
         // Get Note Name from Database
-        dbInUse = true;
         String name = myNoteDb.getName(rowId);
-        dbInUse = false;
 
         noteViewToolbar.setTitle(name);
     }
 
+    // Note Name is the only note data shown outside the body, so only a rename of this note refreshes display
+    @Override
+    void onNotesChanged(Map<Long, Integer> changes) {
+
+        Integer change = changes.get(rowId);
+
+        if ( (change != null) && (change == NoteChangeBus.RENAMED) ) {
+
+            refreshDisplay();
+        }
+    }
+
     @Override
     void updatePasscodeInUI(long passcodeChangeRowId, char[] newPasscode) {
 
@@ -510,12 +522,10 @@ public class NoteViewActivity extends BaseActivity {
         noteViewEditTextNoteBody.setClickable(false);
         noteViewButtonSave.setClickable(false);
 
-        // Check if note is encrypted by checking if passcode hash exists
-        dbInUse = true;
-        String savedPasscodeHash = myNoteDb.getPasscodeHash(rowId);
-        dbInUse = false;
+        // Check if note is encrypted
+        boolean encrypted = myNoteDb.isEncrypted(rowId);
 
-        if (!savedPasscodeHash.equals("")) {
+        if (encrypted) {
 
             // A Passcode is saved => Note is encrypted
 
@@ -649,29 +659,19 @@ public class NoteViewActivity extends BaseActivity {
                 if (!noteDecrypted) {
 
                     // Start New Background Thread to Decrypt Note & Update UI
-                    new Thread(new Runnable() {
+                    DatabaseExecutor.submit(new Runnable() {
 
                         public void run() {
 
-                            // If Database is still in use by another thread, then wait
-                            while (dbInUse) {
-
-                                // Delay
-                                try {
+                            // Decrypt Note from Database
+                            byte[] decryptedBody = myNoteDb.decryptNote(rowId, passcode);
 
-                                    Thread.sleep(dbinUsePause);
-                                }
-                                catch (Exception e) {
+                            // Note couldn't be decrypted, so it stays locked
+                            if (decryptedBody == null) {
 
-                                    //Log.d("A", "Exception to Thread Sleep Request");
-                                }
+                                return;
                             }
 
-                            // Decrypt Note from Database
-                            dbInUse = true;
-                            byte[] decryptedBody = myNoteDb.decryptNote(rowId, passcode);
-                            dbInUse = false;
-
                             // Update UI Variables & Notify Note Body Handler
                             recordBody = new String(decryptedBody);
                             noteDecrypted = true;
@@ -679,7 +679,7 @@ public class NoteViewActivity extends BaseActivity {
                             noteBodyHandler.sendEmptyMessage(SET_TEXT_DATABASE_RECORD);
 
                         }
-                    }).start();
+                    });
                 }
                 else {
 
@@ -716,29 +716,19 @@ public class NoteViewActivity extends BaseActivity {
             noteViewEditTextNoteBody.changeLineColor(getResources().getColor(R.color.colorGreen3));
 
             // New Thread to Get Note from Database & Update UI
-            new Thread(new Runnable() {
+            DatabaseExecutor.submit(new Runnable() {
 
                 public void run() {
 
-                    // If Database is still in use by another thread, then wait
-                    while (dbInUse) {
-
-                        // Delay
-                        try {
+                    // Get Note from Database
+                    byte[] decryptedBody = myNoteDb.decryptNote(rowId, passcode);
 
-                            Thread.sleep(dbinUsePause);
-                        }
-                        catch (Exception e) {
+                    // Note couldn't be read
+                    if (decryptedBody == null) {
 
-                            //Log.d("A", "Exception to Thread Sleep Request");
-                        }
+                        return;
                     }
 
-                    // Get Note from Database
-                    dbInUse = true;
-                    byte[] decryptedBody = myNoteDb.decryptNote(rowId, passcode);
-                    dbInUse = false;
-
                     // Update UI Variables & Note Body Handler
                     recordBody = new String(decryptedBody);
 
@@ -752,7 +742,7 @@ public class NoteViewActivity extends BaseActivity {
                         noteBodyHandler.sendEmptyMessage(SET_TEXT_DATABASE_RECORD);
                     }
                 }
-            }).start();
+            });
         }
     }
 
@@ -764,34 +754,23 @@ public class NoteViewActivity extends BaseActivity {
         noteViewEditTextNoteBody.setClickable(false);
         noteViewButtonSave.setClickable(false);
 
-        // Start Background Thread to Update Note in Database
-        new Thread(new Runnable() {
+        // Queue Database Operation to Update Note
+        DatabaseExecutor.submit(new Runnable() {
 
             public void run() {
 
-                // If Database is still in use by another thread, then wait
-                while (dbInUse) {
-
-                    // Delay
-                    try {
-
-                        Thread.sleep(dbinUsePause);
-                    }
-                    catch (Exception e) {
+                // Update Note in Database & Notify Database Update Handler
+                if (myNoteDb.updateNote(rowId, bodyString.getBytes(), passcode)) {
 
-                        //Log.d("A", "Exception to Thread Sleep Request");
-                    }
+                    databaseUpdateHandler.sendEmptyMessage(NOTE_SAVED);
                 }
+                else {
 
-                // Update Note in Database & Notify Database Update Handler
-                dbInUse = true;
-                myNoteDb.updateNote(rowId, bodyString.getBytes(), passcode);
-                dbInUse = false;
-
-                databaseUpdateHandler.sendEmptyMessage(NOTE_SAVED);
+                    databaseUpdateHandler.sendEmptyMessage(NOTE_NOT_SAVED);
+                }
 
             }
-        }).start();
+        });
 
         // If note is encrypted, then start encrypting graphic effect background thread, otherwise just return to main activity
         if (passcode != null) {
@@ -832,40 +811,29 @@ public class NoteViewActivity extends BaseActivity {
 
             duringPasscodeCheck = true;
 
-            // If Database is still in use by another thread, then wait
-            while (dbInUse & !isInterrupted()) {
-
-                // Delay
-                try {
-
-                    Thread.sleep(dbinUsePause);
-                }
-                catch (Exception e) {
+            if (!isInterrupted()) {
 
-                    //Log.d("A", "Exception to Thread Sleep Request");
-                }
-            }
+                // Check Entered Passcode & Decrypt Note Body in one step (Key is only derived once)
+                // Waits on database thread; interrupting this thread cancels the queued operation
+                byte[] unlockedBody = DatabaseExecutor.call(new Callable<byte[]>() {
 
-            if (!isInterrupted()) {
+                    public byte[] call() {
 
-                // Check Entered Passcode against saved database passcode
-                dbInUse = true;
-                int checkPasscodeResult = myNoteDb.checkPasscode(rowId, testPasscode);
-                dbInUse = false;
+                        return myNoteDb.unlockNote(rowId, testPasscode);
+                    }
+                });
 
                 if (!isInterrupted()) {
 
                     // If passcode is incorrect, then check if Note is Locked, Notify Database Update Handler, & return to Main Activity
-                    if (checkPasscodeResult == 0) {
+                    if (unlockedBody == null) {
 
                         // Passcodes don't match
 
                         databaseUpdateHandler.sendEmptyMessage(INCORRECT_PASSCODE);
 
                         // Check if Note is Locked
-                        dbInUse = true;
                         boolean isNoteLocked = myNoteDb.isNoteLocked(rowId);
-                        dbInUse = false;
 
                         if (isNoteLocked) {
 
@@ -882,23 +850,17 @@ public class NoteViewActivity extends BaseActivity {
 
                         finish();
 
-                    } else if (checkPasscodeResult == 1) {
+                    } else {
 
                         // Passcodes do match
 
                         passcodeChecked = true;
                         passcode = testPasscode;
 
-                        decryptNoteBody();
-
-                    } else if (checkPasscodeResult == 2) {
-
-                        // No passcode is saved (Execution shouldn't reach this point)
-                        //Log.d("A", "No Passcode is saved!");
+                        // Migrate Note to current scheme while its passcode is known (Skipped if already migrated)
+                        SchemeMigrationJob.migrateUnlockedNote(myNoteDb, rowId, testPasscode);
 
-                        duringPasscodeCheck = false;
-
-                        finish();
+                        decryptNoteBody(unlockedBody);
                     }
                 }
             }
@@ -912,22 +874,8 @@ public class NoteViewActivity extends BaseActivity {
             interrupt();
         }
 
-        // Thread Method for Decrypting Note Body
-        private void decryptNoteBody() {
-
-            // If Database is still in use by another thread, then wait
-            while (dbInUse & !isInterrupted()) {
-
-                // Delay
-                try {
-
-                    Thread.sleep(dbinUsePause);
-                }
-                catch (Exception e) {
-
-                    //Log.d("A", "Exception to Thread Sleep Request");
-                }
-            }
+        // Thread Method for Displaying Decrypted Note Body
+        private void decryptNoteBody(byte[] decryptedBody) {
 
             databaseUpdateHandler.sendEmptyMessage(DECRYPTING);
 
@@ -936,11 +884,6 @@ public class NoteViewActivity extends BaseActivity {
 
             if (!isInterrupted()) {
 
-                // Decrypt Note Body from Database
-                dbInUse = true;
-                byte[] decryptedBody = myNoteDb.decryptNote(rowId, testPasscode);
-                dbInUse = false;
-
                 recordBody = new String(decryptedBody);
 
                 noteDecrypted = true;
@@ -1417,11 +1360,9 @@ public class NoteViewActivity extends BaseActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
 
         // Check if note is encrypted and display appropriate toolbar menu options
-        dbInUse = true;
-        String passcodeHash = myNoteDb.getPasscodeHash(rowId);
-        dbInUse = false;
+        boolean encrypted = myNoteDb.isEncrypted(rowId);
 
-        if (passcodeHash.equals("")) {
+        if (!encrypted) {
 
             getMenuInflater().inflate(R.menu.plain_menu_note_view, menu);
         }
@@ -1438,7 +1379,7 @@ public class NoteViewActivity extends BaseActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
 
         // If during graphic effect or database is in use, do nothing.
-        if (!duringEncryptingGraphicalEffect & !duringDecryptingGraphicalEffect & !dbInUse) {
+        if (!duringEncryptingGraphicalEffect & !duringDecryptingGraphicalEffect & !DatabaseExecutor.isBusy()) {
 
             // Close Keyboard when a toolbar menu item is selected
             InputMethodManager imm = (InputMethodManager)getSystemService(Context.INPUT_METHOD_SERVICE);
@@ -1464,34 +1405,18 @@ public class NoteViewActivity extends BaseActivity {
 
                                     public void onClick(DialogInterface dialog, int id) {
 
-                                        // Start seperate thread to Delete Note in Database
-                                        new Thread(new Runnable() {
+                                        // Queue Database Operation to Delete Note
+                                        DatabaseExecutor.submit(new Runnable() {
 
                                             public void run() {
 
-                                                // If Database is still in use by another thread, then wait
-                                                while (dbInUse) {
-
-                                                    // Delay
-                                                    try {
-
-                                                        Thread.sleep(dbinUsePause);
-                                                    }
-                                                    catch (Exception e) {
-
-                                                        //Log.d("A", "Exception to Thread Sleep Request");
-                                                    }
-                                                }
-
                                                 // Delete Note in Database & Notify Database Update Handler
-                                                dbInUse = true;
                                                 myNoteDb.deleteRow(rowId);
-                                                dbInUse = false;
 
                                                 databaseUpdateHandler.sendEmptyMessage(NOTE_DELETED);
 
                                             }
-                                        }).start();
+                                        });
 
                                         // Note open in Note View has been deleted, so return to Main Activity
                                         finish();
@@ -0,0 +1,62 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// PBKDF2 Key Derivation with a JCA algorithm (PBKDF2WithHmacSHA1 or PBKDF2withHmacSHA256)
+final class Pbkdf2Kdf implements KeyDerivationFunction {
+
+    final String algorithm;
+    final int iterationCount;
+
+    Pbkdf2Kdf(String algorithm, int iterationCount) {
+
+        this.algorithm = algorithm;
+        this.iterationCount = iterationCount;
+    }
+
+    public byte[] derive(char[] passcode, byte[] salt, int keyLength) throws NoSuchAlgorithmException, InvalidKeySpecException {
+
+        SecretKeyFactory keyFactory = CryptoContext.get().getKeyFactory(algorithm);
+        PBEKeySpec keySpec = new PBEKeySpec(passcode, salt, iterationCount, keyLength);
+
+        try {
+
+            return keyFactory.generateSecret(keySpec).getEncoded();
+        }
+        finally {
+
+            keySpec.clearPassword();
+        }
+    }
+}
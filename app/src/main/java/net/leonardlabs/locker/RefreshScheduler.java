@@ -0,0 +1,137 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Runs display refreshes on one background thread, at most one running & one pending.
+// Requests made while a refresh runs are merged into the pending refresh (every row, or the union of changed Row Ids), which starts as soon as the running one finishes, so no thread waits on a polled flag.
+final class RefreshScheduler {
+
+    interface Loader {
+
+        // Loads every row (changedRowIds is null) or only changed rows.  Returns early if thread is interrupted.
+        void load(Set<Long> changedRowIds);
+    }
+
+    private final Loader loader;
+    private final String threadName;
+
+    private Thread refreshThread;                   // Null while no refresh is running
+    private boolean pending;
+    private boolean pendingAll;
+    private final Set<Long> pendingRowIds = new HashSet<>();
+
+    RefreshScheduler(Loader loader, String threadName) {
+
+        this.loader = loader;
+        this.threadName = threadName;
+    }
+
+    // Requests refresh of every row
+    synchronized void requestAll() {
+
+        pending = true;
+        pendingAll = true;
+        pendingRowIds.clear();
+
+        start();
+    }
+
+    // Requests refresh of changed rows (merged with any pending request)
+    synchronized void requestChanged(Set<Long> changedRowIds) {
+
+        pending = true;
+
+        if (!pendingAll) {
+
+            pendingRowIds.addAll(changedRowIds);
+        }
+
+        start();
+    }
+
+    // Drops pending request & interrupts running refresh (Requests made afterwards still run)
+    synchronized void cancel() {
+
+        pending = false;
+        pendingAll = false;
+        pendingRowIds.clear();
+
+        if (refreshThread != null) {
+
+            refreshThread.interrupt();
+        }
+    }
+
+    private void start() {
+
+        if (refreshThread == null) {
+
+            refreshThread = new Thread(new Runnable() {
+
+                public void run() {
+
+                    runRefreshes();
+                }
+            }, threadName);
+            refreshThread.start();
+        }
+    }
+
+    // Runs pending refreshes until none is left, then lets the thread finish
+    private void runRefreshes() {
+
+        while (true) {
+
+            Set<Long> changedRowIds;
+
+            synchronized (this) {
+
+                // Interrupt of a cancelled refresh doesn't carry over to a refresh requested later
+                Thread.interrupted();
+
+                if (!pending) {
+
+                    refreshThread = null;
+
+                    return;
+                }
+
+                changedRowIds = pendingAll ? null : new HashSet<>(pendingRowIds);
+
+                pending = false;
+                pendingAll = false;
+                pendingRowIds.clear();
+            }
+
+            loader.load(changedRowIds);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Background job which migrates every note it can decrypt without a passcode (unencrypted notes) to the current scheme & storage format.
+// Key derivation & encryption run on a worker pool sized to the core count, & each batch is written in one transaction on the database thread.
+// Migrated notes no longer match the migration query, so a job interrupted (or killed with the process) resumes where it stopped when run again.
+// Encrypted notes are skipped: migrating one to a new scheme derives a new key from its passcode, & passcodes aren't kept beyond the note they unlock
+// (the session key cache only holds keys for the note's old salt & scheme).  So each encrypted note is migrated when it's unlocked, retried until it succeeds.
+final class SchemeMigrationJob implements Runnable {
+
+    // Notes Prepared & Committed together
+    static final int BATCH_SIZE = 32;
+
+    interface Listener {
+
+        // Called after each batch is committed (done counts every note looked at, including encrypted notes skipped)
+        void onProgress(int done, int total);
+
+        // Called when all notes were processed or job was interrupted
+        void onFinished(int migrated);
+    }
+
+    private final NoteDBAdapter noteDb;
+    private final Listener listener;
+
+    SchemeMigrationJob(NoteDBAdapter noteDb, Listener listener) {
+
+        this.noteDb = noteDb;
+        this.listener = listener;
+    }
+
+    // Migrates a note just unlocked with its passcode on the database thread (Key derivation runs once, as when a note is saved)
+    static void migrateUnlockedNote(final NoteDBAdapter noteDb, final long rowId, char[] passcode) {
+
+        final char[] unlockedPasscode = Arrays.copyOf(passcode, passcode.length);
+
+        DatabaseExecutor.submit(new Runnable() {
+
+            public void run() {
+
+                try {
+
+                    if (noteDb.needsMigration(rowId)) {
+
+                        NoteDBAdapter.PreparedUpdate update = noteDb.prepareMigration(rowId, unlockedPasscode);
+
+                        if (update != null) {
+
+                            noteDb.commitPreparedUpdates(Collections.singletonList(update));
+                        }
+                    }
+                }
+                finally {
+
+                    Arrays.fill(unlockedPasscode, '\0');
+                }
+            }
+        });
+    }
+
+    public void run() {
+
+        int total = noteDb.countNotesToMigrate();
+        int done = 0;
+        int migrated = 0;
+        long lastRowId = -1;
+
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+
+            while (!Thread.currentThread().isInterrupted()) {
+
+                long[] rowIds = noteDb.getNotesToMigrate(lastRowId, BATCH_SIZE);
+
+                if (rowIds.length == 0) {
+
+                    break;
+                }
+
+                // Prepare Batch in parallel (Notes which can't be decrypted are skipped)
+                List<Future<NoteDBAdapter.PreparedUpdate>> preparing = new ArrayList<>();
+
+                for (final long rowId : rowIds) {
+
+                    preparing.add(workers.submit(new Callable<NoteDBAdapter.PreparedUpdate>() {
+
+                        public NoteDBAdapter.PreparedUpdate call() {
+
+                            return noteDb.prepareMigration(rowId, null);
+                        }
+                    }));
+                }
+
+                final List<NoteDBAdapter.PreparedUpdate> batch = new ArrayList<>();
+
+                for (Future<NoteDBAdapter.PreparedUpdate> future : preparing) {
+
+                    NoteDBAdapter.PreparedUpdate update = future.get();
+
+                    if (update != null) {
+
+                        batch.add(update);
+                    }
+                }
+
+                // Commit Batch on database thread
+                Integer committed = DatabaseExecutor.call(new Callable<Integer>() {
+
+                    public Integer call() {
+
+                        return noteDb.commitPreparedUpdates(batch);
+                    }
+                });
+
+                if (committed == null) {
+
+                    // Interrupted while waiting for database
+                    break;
+                }
+
+                migrated += committed;
+                done += rowIds.length;
+                lastRowId = rowIds[rowIds.length - 1];
+
+                listener.onProgress(Math.min(done, total), total);
+            }
+        }
+        catch (InterruptedException interrupted) {
+
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException execution) {
+
+            //Log.d("A", "Execution Exception!  Note Migration stopped!");
+        }
+        finally {
+
+            workers.shutdownNow();
+        }
+
+        listener.onFinished(migrated);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+
+Locker: An open-source notepad application utilizing military-grade encryption with a touch of style!
+Copyright (C) 2017  Blake Leonard
+
+blake@leonardlabs.net
+
+Leonard Labs
+Blake Leonard
+1209 Susan St.
+Kearney, MO 64060
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package net.leonardlabs.locker;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+// Memory-Hard scrypt Key Derivation (RFC 7914), pure Java so it runs the same on ART & the JVM.
+// Memory Cost N (power of 2) & Block Size r set memory used (128 * r * N bytes), Parallelization p multiplies time without more memory.
+// All working buffers are allocated once per derivation, so the mixing loops don't allocate.
+final class ScryptKdf implements KeyDerivationFunction {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    final int memoryCost;                                                  // N
+    final int blockSize;                                                   // r
+    final int parallelization;                                             // p
+
+    ScryptKdf(int memoryCost, int blockSize, int parallelization) {
+
+        if ( (memoryCost < 2) || ((memoryCost & (memoryCost - 1)) != 0) ) {
+
+            throw new IllegalArgumentException("Memory cost must be a power of 2");
+        }
+
+        this.memoryCost = memoryCost;
+        this.blockSize = blockSize;
+        this.parallelization = parallelization;
+    }
+
+    // Bytes of memory used by one derivation
+    long getMemoryBytes() {
+
+        return 128L * blockSize * memoryCost;
+    }
+
+    public byte[] derive(char[] passcode, byte[] salt, int keyLength) throws NoSuchAlgorithmException, InvalidKeySpecException {
+
+        int blockWords = 32 * blockSize;
+        byte[] passcodeBytes = encodePasscode(passcode);
+
+        try {
+
+            // HMAC pads its key with zeros, so an empty passcode is the same key as a single zero byte
+            Mac mac = CryptoContext.get().getMac(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec((passcodeBytes.length > 0) ? passcodeBytes : new byte[1], MAC_ALGORITHM));
+
+            byte[] b = new byte[4 * blockWords * parallelization];
+            byte[] macOutput = new byte[MAC_LENGTH];
+            pbkdf2(mac, salt, b, macOutput);
+
+            int[] x = new int[blockWords];
+            int[] y = new int[blockWords];
+            int[] v = new int[blockWords * memoryCost];
+            int[] salsa = new int[16];
+
+            for (int i = 0; i < parallelization; i++) {
+
+                roMix(b, i * 4 * blockWords, x, y, v, salsa);
+            }
+
+            byte[] derivedKey = new byte[(keyLength + 7) / 8];
+            pbkdf2(mac, b, derivedKey, macOutput);
+
+            Arrays.fill(b, (byte) 0);
+            Arrays.fill(macOutput, (byte) 0);
+            Arrays.fill(x, 0);
+            Arrays.fill(y, 0);
+            Arrays.fill(v, 0);
+
+            return derivedKey;
+        }
+        catch (InvalidKeyException invalidKey) {
+
+            throw new InvalidKeySpecException(invalidKey);
+        }
+        catch (ShortBufferException shortBuffer) {
+
+            throw new InvalidKeySpecException(shortBuffer);
+        }
+        finally {
+
+            Arrays.fill(passcodeBytes, (byte) 0);
+        }
+    }
+
+    // PBKDF2-HMAC-SHA256 with one iteration (as scrypt uses it), output blocks are written in place
+    private static void pbkdf2(Mac mac, byte[] salt, byte[] output, byte[] macOutput) throws ShortBufferException {
+
+        byte[] blockIndex = new byte[4];
+
+        for (int offset = 0, block = 1; offset < output.length; offset += MAC_LENGTH, block++) {
+
+            blockIndex[0] = (byte) (block >>> 24);
+            blockIndex[1] = (byte) (block >>> 16);
+            blockIndex[2] = (byte) (block >>> 8);
+            blockIndex[3] = (byte) block;
+
+            mac.update(salt);
+            mac.update(blockIndex);
+            mac.doFinal(macOutput, 0);
+
+            System.arraycopy(macOutput, 0, output, offset, Math.min(MAC_LENGTH, output.length - offset));
+        }
+    }
+
+    // Sequential Memory-Hard Mixing of one 128 * r byte block of b, at offset
+    private void roMix(byte[] b, int offset, int[] x, int[] y, int[] v, int[] salsa) {
+
+        int blockWords = x.length;
+
+        for (int i = 0; i < blockWords; i++) {
+
+            int index = offset + 4 * i;
+            x[i] = (b[index] & 0xff) | ((b[index + 1] & 0xff) << 8) | ((b[index + 2] & 0xff) << 16) | ((b[index + 3] & 0xff) << 24);
+        }
+
+        for (int i = 0; i < memoryCost; i += 2) {
+
+            System.arraycopy(x, 0, v, i * blockWords, blockWords);
+            blockMix(x, y, salsa);
+            System.arraycopy(y, 0, v, (i + 1) * blockWords, blockWords);
+            blockMix(y, x, salsa);
+        }
+
+        int lastBlock = (2 * blockSize - 1) * 16;
+
+        for (int i = 0; i < memoryCost; i += 2) {
+
+            int j = x[lastBlock] & (memoryCost - 1);
+
+            for (int k = 0; k < blockWords; k++) {
+
+                x[k] ^= v[j * blockWords + k];
+            }
+
+            blockMix(x, y, salsa);
+
+            j = y[lastBlock] & (memoryCost - 1);
+
+            for (int k = 0; k < blockWords; k++) {
+
+                y[k] ^= v[j * blockWords + k];
+            }
+
+            blockMix(y, x, salsa);
+        }
+
+        for (int i = 0; i < blockWords; i++) {
+
+            int index = offset + 4 * i;
+            b[index] = (byte) x[i];
+            b[index + 1] = (byte) (x[i] >>> 8);
+            b[index + 2] = (byte) (x[i] >>> 16);
+            b[index + 3] = (byte) (x[i] >>> 24);
+        }
+    }
+
+    // Mixes input into output (Even Salsa outputs go to 1st half of output, odd to 2nd half)
+    private void blockMix(int[] input, int[] output, int[] salsa) {
+
+        int blocks = 2 * blockSize;
+
+        System.arraycopy(input, (blocks - 1) * 16, salsa, 0, 16);
+
+        for (int i = 0; i < blocks; i++) {
+
+            for (int k = 0; k < 16; k++) {
+
+                salsa[k] ^= input[i * 16 + k];
+            }
+
+            salsa20x8(salsa);
+
+            System.arraycopy(salsa, 0, output, ((i & 1) * blockSize + (i >> 1)) * 16, 16);
+        }
+    }
+
+    // Salsa20/8 Core, in place
+    private static void salsa20x8(int[] b) {
+
+        int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3], x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7];
+        int x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11], x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+
+        for (int i = 0; i < 8; i += 2) {
+
+            // Columns
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);   x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);  x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);    x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);  x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);  x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);  x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);  x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);  x15 ^= Integer.rotateLeft(x11 + x7, 18);
+
+            // Rows
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);    x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);   x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);    x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);   x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);  x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);  x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7); x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13); x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+
+        b[0] += x0; b[1] += x1; b[2] += x2; b[3] += x3; b[4] += x4; b[5] += x5; b[6] += x6; b[7] += x7;
+        b[8] += x8; b[9] += x9; b[10] += x10; b[11] += x11; b[12] += x12; b[13] += x13; b[14] += x14; b[15] += x15;
+    }
+
+    // UTF-8 Passcode Bytes (as PBEKeySpec passcodes are encoded by PBKDF2withHmacSHA256)
+    private static byte[] encodePasscode(char[] passcode) {
+
+        ByteBuffer encoded = Charset.forName("UTF-8").encode(CharBuffer.wrap(passcode));
+        byte[] passcodeBytes = Arrays.copyOf(encoded.array(), encoded.limit());
+        Arrays.fill(encoded.array(), (byte) 0);
+
+        return passcodeBytes;
+    }
+}
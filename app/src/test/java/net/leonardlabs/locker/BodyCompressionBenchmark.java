@@ -0,0 +1,139 @@
+package net.leonardlabs.locker;
+
+import org.junit.Test;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Compress-then-encrypt benchmark, which will execute on the development machine (host).
+ *
+ * Generates note-like corpora (lists, logs, credentials, prose & random bytes) and prints the
+ * Deflate ratio & throughput, then the time to encrypt & decrypt each body with ChunkedBodyCipher
+ * (as notes are saved & read) with and without the Deflate stage.  Only runs when asked for (./gradlew test -Pbenchmark).
+ */
+public class BodyCompressionBenchmark {
+
+    private static final int CORPUS_SIZE = 1024 * 1024;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    private static final EncryptionScheme SCHEME = EncryptionScheme.forCode(EncryptionScheme.GCM_API_26);
+
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec key = new SecretKeySpec(new byte[32], "AES");
+
+    @Test
+    public void compressThenEncrypt_ratioAndThroughput() throws Exception {
+
+        assumeTrue("Timing benchmark, run with -Pbenchmark", Boolean.getBoolean("locker.benchmark"));
+
+        String[] names = {"list", "log", "credentials", "prose", "random"};
+        byte[][] corpora = {
+                NoteCorpus.listCorpus(new Random(1), CORPUS_SIZE),
+                NoteCorpus.logCorpus(new Random(2), CORPUS_SIZE),
+                NoteCorpus.credentialCorpus(new Random(3), CORPUS_SIZE),
+                NoteCorpus.proseCorpus(new Random(4), CORPUS_SIZE),
+                NoteCorpus.randomCorpus(new Random(5), CORPUS_SIZE)};
+
+        // Warm up the JIT (GCM & Deflate) so the first corpus isn't timed on interpreted code
+        for (int run = 0; run < 20; run++) {
+
+            byte[] iv = new byte[SCHEME.ivLength];
+            random.nextBytes(iv);
+            decrypt(iv, encrypt(iv, corpora[run % corpora.length]), CORPUS_SIZE);
+            BodyCompression.deflate(corpora[run % corpora.length]);
+        }
+
+        System.out.println("corpus       ratio  deflate(MB/s)  inflate(MB/s)  save raw/deflated(ms)  open raw/deflated(ms)");
+
+        for (int c = 0; c < corpora.length; c++) {
+
+            byte[] body = corpora[c];
+            byte[] deflated = BodyCompression.deflate(body);
+            byte[] saved = (deflated != null) ? deflated : body;
+
+            long deflateNanos = 0;
+            long inflateNanos = 0;
+            long rawSaveNanos = 0;
+            long deflatedSaveNanos = 0;
+            long rawOpenNanos = 0;
+            long deflatedOpenNanos = 0;
+
+            for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+
+                byte[] iv = new byte[SCHEME.ivLength];
+                random.nextBytes(iv);
+
+                long start = System.nanoTime();
+                byte[] runDeflated = BodyCompression.deflate(body);
+                long deflateEnd = System.nanoTime();
+                byte[] runSaved = (runDeflated != null) ? runDeflated : body;
+                byte[][] deflatedChunks = encrypt(iv, runSaved);
+                long deflatedSaveEnd = System.nanoTime();
+
+                random.nextBytes(iv);
+                byte[][] rawChunks = encrypt(iv, body);
+                long rawSaveEnd = System.nanoTime();
+                byte[] rawOpened = decrypt(iv, rawChunks, body.length);
+                long rawOpenEnd = System.nanoTime();
+
+                random.nextBytes(iv);
+                deflatedChunks = encrypt(iv, runSaved);
+                long openStart = System.nanoTime();
+                byte[] decrypted = decrypt(iv, deflatedChunks, runSaved.length);
+                long inflateStart = System.nanoTime();
+                byte[] deflatedOpened = (runDeflated != null) ? BodyCompression.inflate(decrypted) : decrypted;
+                long openEnd = System.nanoTime();
+
+                assertArrayEquals(body, rawOpened);
+                assertArrayEquals(body, deflatedOpened);
+
+                if (run >= WARMUP_RUNS) {
+
+                    deflateNanos += deflateEnd - start;
+                    deflatedSaveNanos += deflatedSaveEnd - start;
+                    rawSaveNanos += rawSaveEnd - deflatedSaveEnd;
+                    rawOpenNanos += rawOpenEnd - rawSaveEnd;
+                    deflatedOpenNanos += openEnd - openStart;
+                    inflateNanos += openEnd - inflateStart;
+                }
+            }
+
+            double megabytes = (double) body.length * MEASURED_RUNS / (1024 * 1024);
+
+            System.out.println(String.format("%-11s  %5.2f  %13.0f  %13s  %10.1f / %-8.1f  %10.1f / %-8.1f",
+                    names[c],
+                    (double) saved.length / body.length,
+                    megabytes / (deflateNanos / 1e9),
+                    (deflated != null) ? String.format("%.0f", megabytes / (inflateNanos / 1e9)) : "skipped",
+                    rawSaveNanos / 1e6 / MEASURED_RUNS, deflatedSaveNanos / 1e6 / MEASURED_RUNS,
+                    rawOpenNanos / 1e6 / MEASURED_RUNS, deflatedOpenNanos / 1e6 / MEASURED_RUNS));
+        }
+    }
+
+    // Encrypts as note bodies are saved
+    private byte[][] encrypt(byte[] iv, byte[] body) throws Exception {
+
+        return ChunkedBodyCipher.encrypt(SCHEME, key, iv, body);
+    }
+
+    // Decrypts chunk by chunk into one array, as note bodies are read
+    private byte[] decrypt(byte[] iv, byte[][] chunks, int length) throws Exception {
+
+        byte[] body = new byte[length];
+        int offset = 0;
+
+        for (int i = 0; i < chunks.length; i++) {
+
+            offset += ChunkedBodyCipher.decryptChunk(SCHEME, key, iv, i, i == chunks.length - 1, chunks[i], body, offset);
+        }
+
+        return body;
+    }
+}
@@ -0,0 +1,31 @@
+package net.leonardlabs.locker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Body compression test, which will execute on the development machine (host).
+ *
+ * Checks that compressible bodies round trip through Deflate, and that random bytes & short
+ * bodies are left as they are.
+ */
+public class BodyCompressionTest {
+
+    @Test
+    public void deflate_roundTripsAndSkipsSmallGain() throws Exception {
+
+        byte[] list = NoteCorpus.listCorpus(new Random(1), 64 * 1024);
+        byte[] deflated = BodyCompression.deflate(list);
+
+        assertNotNull(deflated);
+        assertTrue(deflated.length < list.length);
+        assertArrayEquals(list, BodyCompression.inflate(deflated));
+
+        // Random bytes & short bodies are saved as is
+        assertNull(BodyCompression.deflate(NoteCorpus.randomCorpus(new Random(2), 64 * 1024)));
+        assertNull(BodyCompression.deflate("short note".getBytes("UTF-8")));
+    }
+}
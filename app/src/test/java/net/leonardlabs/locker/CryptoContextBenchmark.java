@@ -0,0 +1,143 @@
+package net.leonardlabs.locker;
+
+import org.junit.Test;
+
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assume.*;
+
+/**
+ * Crypto primitive microbenchmark, which will execute on the development machine (host).
+ *
+ * Times each hot path operation with a fresh provider lookup (or new SecureRandom) per call,
+ * as NoteDBAdapter used to, against the same operation on the thread's CryptoContext.  Only runs
+ * when asked for (./gradlew test -Pbenchmark).
+ */
+public class CryptoContextBenchmark {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int WARMUP_OPERATIONS = 20000;
+    private static final int MEASURED_OPERATIONS = 50000;
+
+    private final SecretKeySpec key = new SecretKeySpec(new byte[32], "AES");
+    private final byte[] body = new byte[256];
+
+    private interface Operation {
+
+        void run() throws Exception;
+    }
+
+    @Test
+    public void perOperation_lookupVersusContext() throws Exception {
+
+        assumeTrue("Timing benchmark, run with -Pbenchmark", Boolean.getBoolean("locker.benchmark"));
+
+        System.out.println("operation       lookup(ns)  context(ns)");
+
+        print("random IV", measureNanos(new Operation() {
+
+            @Override
+            public void run() {
+
+                byte[] iv = new byte[12];
+                new SecureRandom().nextBytes(iv);
+            }
+        }), measureNanos(new Operation() {
+
+            @Override
+            public void run() {
+
+                CryptoContext.get().randomBytes(12);
+            }
+        }));
+
+        print("gcm encrypt", measureNanos(new Operation() {
+
+            @Override
+            public void run() throws Exception {
+
+                Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, CryptoContext.get().randomBytes(12)));
+                cipher.doFinal(body);
+            }
+        }), measureNanos(new Operation() {
+
+            @Override
+            public void run() throws Exception {
+
+                Cipher cipher = CryptoContext.get().getCipher(TRANSFORMATION);
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, CryptoContext.get().randomBytes(12)));
+                cipher.doFinal(body);
+            }
+        }));
+
+        print("hmac expand", measureNanos(new Operation() {
+
+            @Override
+            public void run() throws Exception {
+
+                Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(new SecretKeySpec(body, 0, 32, MAC_ALGORITHM));
+                mac.doFinal(body);
+            }
+        }), measureNanos(new Operation() {
+
+            @Override
+            public void run() throws Exception {
+
+                Mac mac = CryptoContext.get().getMac(MAC_ALGORITHM);
+                mac.init(new SecretKeySpec(body, 0, 32, MAC_ALGORITHM));
+                mac.doFinal(body);
+            }
+        }));
+
+        // One iteration, so the lookup isn't hidden by the iterations themselves
+        final PBEKeySpec keySpec = new PBEKeySpec("passcode".toCharArray(), new byte[16], 1, 256);
+
+        print("kdf lookup", measureNanos(new Operation() {
+
+            @Override
+            public void run() throws Exception {
+
+                SecretKeyFactory.getInstance(KDF_ALGORITHM).generateSecret(keySpec);
+            }
+        }), measureNanos(new Operation() {
+
+            @Override
+            public void run() throws Exception {
+
+                CryptoContext.get().getKeyFactory(KDF_ALGORITHM).generateSecret(keySpec);
+            }
+        }));
+    }
+
+    // Mean time of one operation, after warmup
+    private static double measureNanos(Operation operation) throws Exception {
+
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+
+            operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+
+            operation.run();
+        }
+        return (double) (System.nanoTime() - start) / MEASURED_OPERATIONS;
+    }
+
+    private static void print(String operation, double lookupNanos, double contextNanos) {
+
+        System.out.println(String.format("%-14s  %10.0f  %11.0f", operation, lookupNanos, contextNanos));
+    }
+}
@@ -0,0 +1,48 @@
+package net.leonardlabs.locker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Crypto context test, which will execute on the development machine (host).
+ *
+ * Checks that each thread reuses its own cached primitives and never sees another thread's.
+ */
+public class CryptoContextTest {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    @Test
+    public void context_returnsSamePrimitivesOnSameThread() throws Exception {
+
+        CryptoContext crypto = CryptoContext.get();
+
+        assertSame(crypto, CryptoContext.get());
+        assertSame(crypto.getCipher(TRANSFORMATION), crypto.getCipher(TRANSFORMATION));
+        assertSame(crypto.getMac(MAC_ALGORITHM), crypto.getMac(MAC_ALGORITHM));
+        assertSame(crypto.getKeyFactory(KDF_ALGORITHM), crypto.getKeyFactory(KDF_ALGORITHM));
+    }
+
+    @Test
+    public void context_isConfinedToThread() throws Exception {
+
+        final CryptoContext[] other = new CryptoContext[1];
+
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                other[0] = CryptoContext.get();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNotNull(other[0]);
+        assertNotSame(CryptoContext.get(), other[0]);
+    }
+}
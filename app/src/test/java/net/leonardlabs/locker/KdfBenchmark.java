@@ -0,0 +1,82 @@
+package net.leonardlabs.locker;
+
+import org.junit.Test;
+
+import java.security.SecureRandom;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Key derivation benchmark, which will execute on the development machine (host).
+ *
+ * Compares PBKDF2 with scrypt at equal wall-clock budgets: each KDF's cost is doubled until one
+ * derivation fills the budget, and the time & memory an attacker pays per guess are printed side
+ * by side.  Only runs when asked for (./gradlew test -Pbenchmark).
+ */
+public class KdfBenchmark {
+
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int KEY_LENGTH = 256;
+    private static final long[] BUDGETS_MILLIS = {100, 250};
+    private static final int MEASURED_RUNS = 3;
+
+    private static final char[] PASSCODE = "benchmark passcode".toCharArray();
+
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] salt = new byte[16];
+
+    @Test
+    public void pbkdf2VersusScrypt_equalTimeBudget() throws Exception {
+
+        assumeTrue("Timing benchmark, run with -Pbenchmark", Boolean.getBoolean("locker.benchmark"));
+
+        random.nextBytes(salt);
+
+        // Warm up the JIT so the first budget isn't sized on interpreted code
+        for (int run = 0; run < 10; run++) {
+
+            measureMillis(new Pbkdf2Kdf(PBKDF2_ALGORITHM, 20000));
+            measureMillis(new ScryptKdf(4096, 8, 1));
+        }
+
+        System.out.println("budget(ms)  kdf     cost          time(ms)  memory(KiB)");
+
+        for (long budget : BUDGETS_MILLIS) {
+
+            // PBKDF2: Double Iterations until one derivation fills the budget
+            int iterations = 1000;
+            while (measureMillis(new Pbkdf2Kdf(PBKDF2_ALGORITHM, iterations * 2)) <= budget) {
+
+                iterations *= 2;
+            }
+            Pbkdf2Kdf pbkdf2 = new Pbkdf2Kdf(PBKDF2_ALGORITHM, iterations);
+
+            // scrypt: Double Memory Cost (r = 8, p = 1) until one derivation fills the budget
+            int memoryCost = 1024;
+            while (measureMillis(new ScryptKdf(memoryCost * 2, 8, 1)) <= budget) {
+
+                memoryCost *= 2;
+            }
+            ScryptKdf scrypt = new ScryptKdf(memoryCost, 8, 1);
+
+            System.out.println(String.format("%-10d  pbkdf2  i=%-10d  %8.1f  %11s",
+                    budget, iterations, measureMillis(pbkdf2), "~0"));
+            System.out.println(String.format("%-10d  scrypt  N=%-10d  %8.1f  %11d",
+                    budget, memoryCost, measureMillis(scrypt), scrypt.getMemoryBytes() / 1024));
+        }
+    }
+
+    // Mean time of one derivation, after a warmup run
+    private double measureMillis(KeyDerivationFunction kdf) throws Exception {
+
+        kdf.derive(PASSCODE, salt, KEY_LENGTH);
+
+        long start = System.nanoTime();
+        for (int run = 0; run < MEASURED_RUNS; run++) {
+
+            assertEquals(KEY_LENGTH / 8, kdf.derive(PASSCODE, salt, KEY_LENGTH).length);
+        }
+        return (System.nanoTime() - start) / 1e6 / MEASURED_RUNS;
+    }
+}
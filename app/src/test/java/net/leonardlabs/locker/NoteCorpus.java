@@ -0,0 +1,101 @@
+package net.leonardlabs.locker;
+
+import java.util.Random;
+
+/**
+ * Note-like test corpora (lists, logs, credentials, prose & random bytes), generated from a seed
+ * so every run compresses the same bytes.
+ */
+final class NoteCorpus {
+
+    private NoteCorpus() {
+    }
+
+    // Shopping & to do lists
+    static byte[] listCorpus(Random random, int size) throws Exception {
+
+        String[] items = {"milk", "eggs", "bread", "coffee", "call dentist", "pay rent", "renew passport", "oil change", "batteries", "dog food"};
+        StringBuilder text = new StringBuilder();
+
+        while (text.length() < size) {
+
+            text.append(random.nextBoolean() ? "[ ] " : "[x] ").append(items[random.nextInt(items.length)]).append('\n');
+        }
+
+        return fit(text, size);
+    }
+
+    // Timestamped application log lines
+    static byte[] logCorpus(Random random, int size) throws Exception {
+
+        String[] levels = {"INFO", "WARN", "DEBUG", "ERROR"};
+        String[] messages = {"connection opened", "request completed in %d ms", "retrying after timeout", "cache miss for key %d", "user %d signed in"};
+        StringBuilder text = new StringBuilder();
+        long time = 1500000000000L;
+
+        while (text.length() < size) {
+
+            time += random.nextInt(5000);
+            text.append(time).append(' ').append(levels[random.nextInt(levels.length)]).append(' ')
+                    .append(String.format(messages[random.nextInt(messages.length)], random.nextInt(10000))).append('\n');
+        }
+
+        return fit(text, size);
+    }
+
+    // Site, user & random password entries
+    static byte[] credentialCorpus(Random random, int size) throws Exception {
+
+        String[] sites = {"bank", "email", "work vpn", "router", "streaming", "insurance"};
+        String characters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%";
+        StringBuilder text = new StringBuilder();
+
+        while (text.length() < size) {
+
+            text.append("site: ").append(sites[random.nextInt(sites.length)]).append("\nuser: user").append(random.nextInt(100)).append("\npass: ");
+
+            for (int i = 0; i < 16; i++) {
+
+                text.append(characters.charAt(random.nextInt(characters.length())));
+            }
+
+            text.append("\n\n");
+        }
+
+        return fit(text, size);
+    }
+
+    // Sentences from a small vocabulary
+    static byte[] proseCorpus(Random random, int size) throws Exception {
+
+        String[] words = {"the", "meeting", "was", "moved", "to", "thursday", "because", "project", "needs", "more", "time", "and", "we", "should", "review", "budget", "before", "next", "quarter"};
+        StringBuilder text = new StringBuilder();
+
+        while (text.length() < size) {
+
+            int sentenceLength = 5 + random.nextInt(12);
+
+            for (int i = 0; i < sentenceLength; i++) {
+
+                text.append(words[random.nextInt(words.length)]).append((i == sentenceLength - 1) ? ". " : " ");
+            }
+        }
+
+        return fit(text, size);
+    }
+
+    static byte[] randomCorpus(Random random, int size) {
+
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    private static byte[] fit(StringBuilder text, int size) throws Exception {
+
+        text.setLength(size);
+
+        return text.toString().getBytes("UTF-8");
+    }
+}
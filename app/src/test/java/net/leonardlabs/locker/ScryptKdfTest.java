@@ -0,0 +1,35 @@
+package net.leonardlabs.locker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * scrypt key derivation test, which will execute on the development machine (host).
+ *
+ * Checks the pure-Java scrypt implementation against the RFC 7914 test vectors.
+ */
+public class ScryptKdfTest {
+
+    @Test
+    public void scrypt_matchesRfc7914Vectors() throws Exception {
+
+        assertEquals("77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442"
+                + "fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906",
+                toHex(new ScryptKdf(16, 1, 1).derive("".toCharArray(), new byte[0], 512)));
+
+        assertEquals("fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+                + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640",
+                toHex(new ScryptKdf(1024, 8, 16).derive("password".toCharArray(), "NaCl".getBytes("US-ASCII"), 512)));
+    }
+
+    private static String toHex(byte[] bytes) {
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}